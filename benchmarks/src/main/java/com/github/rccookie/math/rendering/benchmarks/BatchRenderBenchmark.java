@@ -0,0 +1,96 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Renders a batch of independent expressions with
+ * {@link RenderableExpression#renderAll(java.util.Collection, com.github.rccookie.math.rendering.RenderMode, RenderOptions, java.util.concurrent.Executor) renderAll()}
+ * on pools of different sizes, to show how batch rendering scales with the number of cores.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchRenderBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Batch {
+
+        @Param({ "1000" })
+        public int count;
+        @Param({ "ASCII_ART", "LATEX" })
+        public Format format;
+
+        private List<RenderableExpression> expressions;
+
+        @Setup
+        public void setup() {
+            NodeType[] nodes = NodeType.values();
+            Shape[] shapes = Shape.values();
+            expressions = new ArrayList<>(count);
+            for(int i=0; i<count; i++) {
+                // Mostly small expressions, with a few larger ones in between
+                if(i % 10 == 0)
+                    expressions.add(shapes[i / 10 % shapes.length].create(8 + i % 9));
+                else expressions.add(RenderableExpression.plus(nodes[i % nodes.length].create(), RenderableExpression.num(i)));
+            }
+        }
+    }
+
+    /**
+     * The pool to render on. The sequential benchmark does not use it, so it does not get
+     * repeated for each pool size.
+     */
+    @State(Scope.Benchmark)
+    public static class Pool {
+
+        @Param({ "1", "2", "4", "8" })
+        public int threads;
+
+        private ForkJoinPool pool;
+
+        @Setup
+        public void setup() {
+            pool = new ForkJoinPool(threads);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void renderAll(Batch batch, Pool pool, Blackhole blackhole) {
+        for(CompletableFuture<?> result : RenderableExpression.renderAll(batch.expressions, batch.format.mode, RenderOptions.DEFAULT, pool.pool))
+            blackhole.consume(result.join());
+    }
+
+    @Benchmark
+    public void renderSequentially(Batch batch, Blackhole blackhole) {
+        for(RenderableExpression expression : batch.expressions)
+            blackhole.consume(expression.render(batch.format.mode, RenderOptions.DEFAULT));
+    }
+}
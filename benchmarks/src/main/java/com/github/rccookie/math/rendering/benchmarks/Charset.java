@@ -0,0 +1,19 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import com.github.rccookie.math.rendering.CharacterSet;
+
+/**
+ * The built-in character sets.
+ */
+public enum Charset {
+    ASCII(CharacterSet.ASCII),
+    ISO_8859_1(CharacterSet.ISO_8859_1),
+    UNICODE(CharacterSet.UNICODE),
+    MOD_UNICODE(CharacterSet.MOD_UNICODE);
+
+    final CharacterSet charset;
+
+    Charset(CharacterSet charset) {
+        this.charset = charset;
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.util.List;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+
+/**
+ * A list of generated expressions, together with the number of nodes each of them was
+ * built from, so that measurements can be normalized per node.
+ */
+public final class Corpus {
+
+    private final List<RenderableExpression> expressions;
+    private final int[] nodeCounts;
+    private final long nodeCount;
+
+    Corpus(List<RenderableExpression> expressions, int[] nodeCounts) {
+        this.expressions = List.copyOf(expressions);
+        this.nodeCounts = nodeCounts.clone();
+        long nodeCount = 0;
+        for(int count : nodeCounts)
+            nodeCount += count;
+        this.nodeCount = nodeCount;
+    }
+
+    public List<RenderableExpression> expressions() {
+        return expressions;
+    }
+
+    public int size() {
+        return expressions.size();
+    }
+
+    /**
+     * Returns the number of nodes of the expression at the given index.
+     */
+    public int nodeCount(int index) {
+        return nodeCounts[index];
+    }
+
+    /**
+     * Returns the total number of nodes of all expressions.
+     */
+    public long nodeCount() {
+        return nodeCount;
+    }
+}
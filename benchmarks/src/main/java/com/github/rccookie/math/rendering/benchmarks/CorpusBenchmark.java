@@ -0,0 +1,71 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Renders a generated corpus in each render mode. Besides the corpus renders per second, the
+ * rendered nodes per second are reported. The allocation per node can be found by dividing
+ * <code>gc.alloc.rate.norm</code> by the node count printed by {@link CorpusHarness}, which
+ * also measures both directly.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CorpusBenchmark {
+
+    @Param
+    public Profile profile;
+    @Param
+    public Format format;
+    @Param({ "42" })
+    public long seed;
+    @Param({ "100" })
+    public int count;
+
+    private Corpus corpus;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        corpus = profile.generator.generate(seed, count);
+    }
+
+    @Benchmark
+    public void render(Nodes nodes, Blackhole blackhole) {
+        for(RenderableExpression expression : corpus.expressions())
+            blackhole.consume(expression.render(format.mode, RenderOptions.DEFAULT));
+        nodes.nodes += corpus.nodeCount();
+    }
+}
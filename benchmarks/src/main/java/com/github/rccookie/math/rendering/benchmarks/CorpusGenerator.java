@@ -0,0 +1,432 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BinaryOperator;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+
+import static com.github.rccookie.math.rendering.RenderableExpression.*;
+
+/**
+ * Generates random expressions over the builders of {@link RenderableExpression}. The same
+ * seed and settings always generate the same corpus, so that a performance regression found
+ * with it can be reproduced. Instances are immutable, the set methods return modified copies.
+ *
+ * <p>Children are generated depth-first, starting with the leftmost one, until the node budget
+ * of the expression is used up. After that, only leaves are generated. Thus, without leaf
+ * probability, the generated expressions are deep left chains.</p>
+ */
+public final class CorpusGenerator {
+
+    /**
+     * The kinds of nodes that can be generated.
+     */
+    public enum Kind {
+        INTEGER(true),
+        DECIMAL(true),
+        BIG_DECIMAL(true),
+        RATIONAL(true),
+        NAME(true),
+        SPECIAL(true),
+        TEXT(true),
+
+        INFIX(false),
+        PREFIX(false),
+        POSTFIX(false),
+        FRACTION(false),
+        POWER(false),
+        SUBSCRIPT(false),
+        SUPER_SUBSCRIPT(false),
+        ROOT(false),
+        BRACKETS(false),
+        CALL(false),
+        LIST(false),
+        SET(false),
+        BIG_OPERATOR(false),
+        INTEGRAL(false),
+        EXP(false),
+        CONCATENATION(false),
+        VECTOR(false),
+        MATRIX(false),
+        NUMERIC_MATRIX(false),
+        AUGMENTED_MATRIX(false),
+        ELIDED_MATRIX(false);
+
+        /**
+         * Whether nodes of this kind have no generated children.
+         */
+        public final boolean leaf;
+
+        Kind(boolean leaf) {
+            this.leaf = leaf;
+        }
+    }
+
+    /**
+     * Small, mixed expressions using all kinds of nodes.
+     */
+    public static final CorpusGenerator DEFAULT;
+    static {
+        double[] weights = new double[Kind.values().length];
+        Arrays.fill(weights, 1);
+        weights[Kind.INTEGER.ordinal()] = 4;
+        weights[Kind.NAME.ordinal()] = 4;
+        weights[Kind.INFIX.ordinal()] = 4;
+        DEFAULT = new CorpusGenerator(6, 64, 4, 12, 0.3, weights);
+    }
+
+    private static final List<BinaryOperator<RenderableExpression>> INFIX_OPERATORS = List.of(
+            RenderableExpression::plus, RenderableExpression::minus, RenderableExpression::mult, RenderableExpression::div,
+            RenderableExpression::cross, RenderableExpression::mod, RenderableExpression::eq, RenderableExpression::nEquals,
+            RenderableExpression::approx, RenderableExpression::less, RenderableExpression::leq, RenderableExpression::greater,
+            RenderableExpression::geq, RenderableExpression::def, RenderableExpression::in, RenderableExpression::nIn,
+            RenderableExpression::and, RenderableExpression::or
+    );
+    private static final List<UnaryOperator<RenderableExpression>> PREFIX_OPERATORS = List.of(
+            RenderableExpression::neg, RenderableExpression::not
+    );
+    private static final List<UnaryOperator<RenderableExpression>> POSTFIX_OPERATORS = List.of(
+            RenderableExpression::factorial, RenderableExpression::percent, RenderableExpression::deg, RenderableExpression::transp
+    );
+    private static final List<UnaryOperator<RenderableExpression>> BRACKETS = List.of(
+            RenderableExpression::par, RenderableExpression::brackets, RenderableExpression::curly,
+            RenderableExpression::ceil, RenderableExpression::floor, RenderableExpression::abs
+    );
+    private static final List<Supplier<RenderableExpression>> SPECIALS = List.of(
+            RenderableExpression::pi, RenderableExpression::inf, RenderableExpression::naturals,
+            RenderableExpression::reals, RenderableExpression::cdots
+    );
+    private static final String[] NAMES = { "x", "y", "z", "a", "b", "n", "k", "t" };
+    private static final String[] FUNCTIONS = { "f", "g", "sin", "log", "max" };
+    private static final String[] TEXTS = { "for all", "otherwise", "if", "with probability" };
+
+    /**
+     * The maximum nesting depth.
+     */
+    public final int maxDepth;
+    /**
+     * The maximum number of nodes per expression. Once reached, only leaves are generated to
+     * complete the expression. Matrix cells count as nodes.
+     */
+    public final int maxNodes;
+    /**
+     * The maximum number of children of lists, calls and vectors, and the maximum number of
+     * rows and columns of matrices.
+     */
+    public final int maxFanOut;
+    /**
+     * The maximum number of digits of generated numbers, and the maximum magnitude of the
+     * decimal exponent of decimal numbers.
+     */
+    public final int maxDigits;
+    /**
+     * The probability to generate a leaf even though the maximum depth and node count are not
+     * reached yet.
+     */
+    public final double leafProbability;
+    /**
+     * Relative probability of each kind, by ordinal. Leaves and other nodes are weighted
+     * separately.
+     */
+    private final double[] weights;
+
+    private CorpusGenerator(int maxDepth, int maxNodes, int maxFanOut, int maxDigits, double leafProbability, double[] weights) {
+        if(maxDepth < 0 || maxNodes < 1 || maxFanOut < 1 || maxDigits < 1)
+            throw new IllegalArgumentException("Limits must be positive");
+        if(leafProbability < 0 || leafProbability > 1)
+            throw new IllegalArgumentException("Leaf probability must be in [0,1]");
+        this.maxDepth = maxDepth;
+        this.maxNodes = maxNodes;
+        this.maxFanOut = maxFanOut;
+        this.maxDigits = maxDigits;
+        this.leafProbability = leafProbability;
+        this.weights = weights;
+        if(Arrays.stream(Kind.values()).noneMatch(k -> k.leaf && weights[k.ordinal()] > 0))
+            throw new IllegalArgumentException("At least one kind of leaf is required");
+    }
+
+    public CorpusGenerator setMaxDepth(int maxDepth) {
+        return new CorpusGenerator(maxDepth, maxNodes, maxFanOut, maxDigits, leafProbability, weights);
+    }
+
+    public CorpusGenerator setMaxNodes(int maxNodes) {
+        return new CorpusGenerator(maxDepth, maxNodes, maxFanOut, maxDigits, leafProbability, weights);
+    }
+
+    public CorpusGenerator setMaxFanOut(int maxFanOut) {
+        return new CorpusGenerator(maxDepth, maxNodes, maxFanOut, maxDigits, leafProbability, weights);
+    }
+
+    public CorpusGenerator setMaxDigits(int maxDigits) {
+        return new CorpusGenerator(maxDepth, maxNodes, maxFanOut, maxDigits, leafProbability, weights);
+    }
+
+    public CorpusGenerator setLeafProbability(double leafProbability) {
+        return new CorpusGenerator(maxDepth, maxNodes, maxFanOut, maxDigits, leafProbability, weights);
+    }
+
+    /**
+     * Returns a copy with the given relative probability for the given kind of node.
+     */
+    public CorpusGenerator setWeight(Kind kind, double weight) {
+        if(weight < 0 || !Double.isFinite(weight))
+            throw new IllegalArgumentException("Invalid weight: "+weight);
+        double[] weights = this.weights.clone();
+        weights[kind.ordinal()] = weight;
+        return new CorpusGenerator(maxDepth, maxNodes, maxFanOut, maxDigits, leafProbability, weights);
+    }
+
+    /**
+     * Returns a copy which only generates the given kinds of nodes other than leaves, all with
+     * the same probability. The leaves are not changed.
+     */
+    public CorpusGenerator setInnerKinds(Kind... kinds) {
+        double[] weights = this.weights.clone();
+        for(Kind kind : Kind.values())
+            if(!kind.leaf) weights[kind.ordinal()] = 0;
+        for(Kind kind : kinds)
+            weights[kind.ordinal()] = 1;
+        return new CorpusGenerator(maxDepth, maxNodes, maxFanOut, maxDigits, leafProbability, weights);
+    }
+
+    public double getWeight(Kind kind) {
+        return weights[kind.ordinal()];
+    }
+
+    /**
+     * Generates count expressions from the given seed.
+     */
+    public Corpus generate(long seed, int count) {
+        Random random = new Random(seed);
+        List<RenderableExpression> expressions = new ArrayList<>(count);
+        int[] nodeCounts = new int[count];
+        for(int i=0; i<count; i++) {
+            Generation generation = new Generation(random);
+            expressions.add(generation.next(0));
+            nodeCounts[i] = generation.nodes;
+        }
+        return new Corpus(expressions, nodeCounts);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder str = new StringBuilder("CorpusGenerator{maxDepth=").append(maxDepth)
+                .append(", maxNodes=").append(maxNodes)
+                .append(", maxFanOut=").append(maxFanOut)
+                .append(", maxDigits=").append(maxDigits)
+                .append(", leafProbability=").append(leafProbability)
+                .append(", weights={");
+        for(Kind kind : Kind.values())
+            if(weights[kind.ordinal()] != 0)
+                str.append(kind).append('=').append(weights[kind.ordinal()]).append(", ");
+        str.setLength(str.length() - 2);
+        return str.append("}}").toString();
+    }
+
+    /**
+     * The state of generating a single expression.
+     */
+    private final class Generation {
+
+        final Random random;
+        int nodes = 0;
+
+        Generation(Random random) {
+            this.random = random;
+        }
+
+        RenderableExpression next(int depth) {
+            nodes++;
+            if(depth >= maxDepth || nodes >= maxNodes || random.nextDouble() < leafProbability)
+                return leaf();
+            Kind kind = pick(false);
+            return kind != null ? node(kind, depth + 1) : leaf();
+        }
+
+        RenderableExpression leaf() {
+            switch(pick(true)) {
+                case INTEGER: return integer();
+                case DECIMAL: return decimal();
+                case BIG_DECIMAL: return num(new BigDecimal(bigInteger(), exponent()));
+                case RATIONAL: return num(bigInteger(), bigInteger().abs().add(BigInteger.ONE), random.nextBoolean());
+                case NAME: return name(pick(NAMES));
+                case SPECIAL: return pick(SPECIALS).get();
+                case TEXT: return text(pick(TEXTS));
+                default: throw new AssertionError();
+            }
+        }
+
+        RenderableExpression node(Kind kind, int depth) {
+            switch(kind) {
+                case INFIX: {
+                    BinaryOperator<RenderableExpression> operator = pick(INFIX_OPERATORS);
+                    RenderableExpression a = next(depth);
+                    return operator.apply(a, next(depth));
+                }
+                case PREFIX: return pick(PREFIX_OPERATORS).apply(next(depth));
+                case POSTFIX: return pick(POSTFIX_OPERATORS).apply(next(depth));
+                case FRACTION: {
+                    RenderableExpression a = next(depth);
+                    return frac(a, next(depth));
+                }
+                case POWER: {
+                    RenderableExpression a = next(depth);
+                    return pow(a, next(depth));
+                }
+                case SUBSCRIPT: {
+                    RenderableExpression a = next(depth);
+                    return sub(a, next(depth));
+                }
+                case SUPER_SUBSCRIPT: {
+                    RenderableExpression a = next(depth), b = next(depth);
+                    return pow(sub(a, b), next(depth));
+                }
+                case ROOT: {
+                    switch(random.nextInt(3)) {
+                        case 0: return sqrt(next(depth));
+                        case 1: return cbrt(next(depth));
+                        default: {
+                            RenderableExpression degree = next(depth);
+                            return root(degree, next(depth));
+                        }
+                    }
+                }
+                case BRACKETS: return pick(BRACKETS).apply(next(depth));
+                case CALL: return call(pick(FUNCTIONS), children(fanOut(), depth));
+                case LIST: {
+                    RenderableExpression[] elements = children(fanOut(), depth);
+                    return random.nextBoolean() ? list(elements) : tuple(elements);
+                }
+                case SET: {
+                    RenderableExpression pattern = next(depth);
+                    return set(pattern, next(depth));
+                }
+                case BIG_OPERATOR: {
+                    RenderableExpression var = name(pick(NAMES));
+                    switch(random.nextInt(3)) {
+                        case 0: {
+                            RenderableExpression start = next(depth), end = next(depth);
+                            return sum(eq(var, start), end, next(depth));
+                        }
+                        case 1: {
+                            RenderableExpression start = next(depth), end = next(depth);
+                            return prod(eq(var, start), end, next(depth));
+                        }
+                        default: {
+                            RenderableExpression target = next(depth);
+                            return lim(var, target, next(depth));
+                        }
+                    }
+                }
+                case INTEGRAL: {
+                    RenderableExpression lower = next(depth), upper = next(depth);
+                    return integral(lower, upper, next(depth), pick(NAMES));
+                }
+                case EXP: return exp(next(depth));
+                case CONCATENATION: {
+                    RenderableExpression a = next(depth);
+                    return random.nextBoolean() ? implicit(a, next(depth)) : concat(a, next(depth));
+                }
+                case VECTOR: return vec(children(fanOut(), depth));
+                case MATRIX: {
+                    int m = fanOut(), n = fanOut();
+                    return matrix(m, n, children(m * n, depth));
+                }
+                case NUMERIC_MATRIX: {
+                    int m = fanOut(), n = fanOut();
+                    nodes += m * n - 1;
+                    double[][] rows = new double[m][n];
+                    for(double[] row : rows) for(int j=0; j<n; j++)
+                        row[j] = random.nextInt(4) == 0 ? random.nextInt(100) - 50 : decimalValue();
+                    return matrix(rows);
+                }
+                case AUGMENTED_MATRIX: {
+                    int m = fanOut(), n = fanOut();
+                    RenderableExpression a = grid(m, n, children(m * n, depth));
+                    return augMatrix(a, column(children(m, depth)));
+                }
+                case ELIDED_MATRIX: {
+                    int m = fanOut() * fanOut(), n = fanOut() * fanOut(), visible = 1 + random.nextInt(3);
+                    nodes += Math.min(m, 2 * visible + 1) * Math.min(n, 2 * visible + 1) - 1;
+                    return matrix(m, n, visible, (i,j) -> num(i * n + j));
+                }
+                default: throw new AssertionError(kind);
+            }
+        }
+
+        RenderableExpression[] children(int count, int depth) {
+            RenderableExpression[] children = new RenderableExpression[count];
+            for(int i=0; i<count; i++)
+                children[i] = next(depth);
+            return children;
+        }
+
+        int fanOut() {
+            return 1 + random.nextInt(maxFanOut);
+        }
+
+        RenderableExpression integer() {
+            BigInteger value = bigInteger();
+            return value.bitLength() < 64 ? num(value.longValue()) : num(value);
+        }
+
+        /**
+         * Returns a random integer with up to {@link #maxDigits} digits, negative in one of
+         * four cases.
+         */
+        BigInteger bigInteger() {
+            int digits = 1 + random.nextInt(maxDigits);
+            // log2(10) > 3.32
+            BigInteger value = new BigInteger(digits * 332 / 100 + 1, random);
+            return random.nextInt(4) == 0 ? value.negate() : value;
+        }
+
+        RenderableExpression decimal() {
+            return num(decimalValue(), random.nextBoolean());
+        }
+
+        double decimalValue() {
+            double value = random.nextDouble() * Math.pow(10, exponent());
+            return random.nextInt(4) == 0 ? -value : value;
+        }
+
+        /**
+         * Returns a random decimal exponent, at most {@link #maxDigits} and never beyond the
+         * range of doubles.
+         */
+        int exponent() {
+            int range = Math.min(maxDigits, 300);
+            return random.nextInt(2 * range + 1) - range;
+        }
+
+        Kind pick(boolean leaf) {
+            double total = 0;
+            for(Kind kind : Kind.values())
+                if(kind.leaf == leaf) total += weights[kind.ordinal()];
+            if(total == 0) return null;
+            double x = random.nextDouble() * total;
+            Kind last = null;
+            for(Kind kind : Kind.values()) {
+                if(kind.leaf != leaf || weights[kind.ordinal()] == 0) continue;
+                last = kind;
+                if((x -= weights[kind.ordinal()]) < 0) return kind;
+            }
+            return last; // Rounding errors
+        }
+
+        <T> T pick(List<T> options) {
+            return options.get(random.nextInt(options.size()));
+        }
+
+        <T> T pick(T[] options) {
+            return options[random.nextInt(options.length)];
+        }
+    }
+}
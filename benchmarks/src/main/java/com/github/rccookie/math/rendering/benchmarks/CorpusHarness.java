@@ -0,0 +1,61 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.lang.management.ManagementFactory;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+
+/**
+ * Renders the corpus of each {@link Profile} in each {@link Format} and prints the time and
+ * the allocated bytes per rendered node. This is much quicker than the corresponding JMH
+ * benchmark and thus suited to find regressions, but less precise.
+ *
+ * <p>Usage: <code>CorpusHarness [seed [count [rounds [profile...]]]]</code></p>
+ */
+public final class CorpusHarness {
+
+    private CorpusHarness() { throw new UnsupportedOperationException(); }
+
+    public static void main(String[] args) {
+        long seed = args.length > 0 ? Long.parseLong(args[0]) : 42;
+        int count = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int rounds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        Profile[] profiles = Profile.values();
+        if(args.length > 3) {
+            profiles = new Profile[args.length - 3];
+            for(int i=0; i<profiles.length; i++)
+                profiles[i] = Profile.valueOf(args[i + 3]);
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        System.out.printf("seed=%d, count=%d, rounds=%d%n", seed, count, rounds);
+        System.out.printf("%-16s %-10s %10s %12s %12s %12s%n", "profile", "format", "nodes", "ns/node", "bytes/node", "nodes/s");
+        for(Profile profile : profiles) {
+            Corpus corpus = profile.generator.generate(seed, count);
+            for(Format format : Format.values()) {
+                // Warm up with as many rounds as are measured
+                render(corpus, format, rounds);
+
+                long bytes = threads.getThreadAllocatedBytes(thread);
+                long time = System.nanoTime();
+                render(corpus, format, rounds);
+                time = System.nanoTime() - time;
+                bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+                double nodes = (double) corpus.nodeCount() * rounds;
+                System.out.printf("%-16s %-10s %10d %12.1f %12.1f %12.0f%n",
+                        profile, format, corpus.nodeCount(), time / nodes, bytes / nodes, nodes / time * 1e9);
+            }
+        }
+    }
+
+    private static int render(Corpus corpus, Format format, int rounds) {
+        int hash = 0; // Prevent dead code elimination
+        for(int i=0; i<rounds; i++)
+            for(RenderableExpression expression : corpus.expressions())
+                hash += expression.render(format.mode, RenderOptions.DEFAULT).hashCode();
+        return hash;
+    }
+}
@@ -0,0 +1,73 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import com.github.rccookie.math.rendering.MathMLWriter;
+import com.github.rccookie.math.rendering.RenderCache;
+import com.github.rccookie.math.rendering.RenderMode;
+import com.github.rccookie.math.rendering.RenderableExpression;
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+import com.github.rccookie.xml.Node;
+
+/**
+ * Renders a chain of additions nested far deeper than any render call stack could hold, in
+ * each {@link Format} and as MathML node, on a thread with a small stack. The returned
+ * results, the results copied from a {@link RenderCache} and, for MathML, the streamed
+ * output are checked. Exits with status 1 if any
+ * of them fails, for example with a {@link StackOverflowError}.
+ *
+ * <p>Usage: <code>DeepNestingCheck [depth [stackSize]]</code></p>
+ */
+public final class DeepNestingCheck {
+
+    private DeepNestingCheck() { throw new UnsupportedOperationException(); }
+
+    public static void main(String[] args) throws InterruptedException {
+        int depth = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        long stackSize = args.length > 1 ? Long.parseLong(args[1]) : 1 << 20;
+
+        boolean[] passed = { true };
+        Thread thread = new Thread(null, () -> {
+            RenderableExpression expression = Shape.CHAIN.create(depth);
+            for(Format format : Format.values())
+                passed[0] &= check(format.toString(), () -> expression.render(format.mode, RenderOptions.DEFAULT));
+            passed[0] &= check("MATH_ML_NODE", () -> expression.render(RenderMode.MATH_ML_NODE, RenderOptions.DEFAULT));
+            RenderOptions cached = RenderOptions.DEFAULT.setCache(new RenderCache(16));
+            passed[0] &= check("MATH_ML_NODE (cached)", () -> {
+                expression.render(RenderMode.MATH_ML_NODE, cached);
+                return expression.render(RenderMode.MATH_ML_NODE, cached);
+            });
+            passed[0] &= check("MATH_ML (streamed)", () -> stream(expression, RenderMode.MATH_ML));
+            passed[0] &= check("MATH_ML_NODE (streamed)", () -> stream(expression, RenderMode.MATH_ML_NODE));
+        }, "deep-nesting-check", stackSize);
+        thread.start();
+        thread.join();
+
+        System.out.printf("depth=%d, stackSize=%d: %s%n", depth, stackSize, passed[0] ? "passed" : "FAILED");
+        if(!passed[0])
+            System.exit(1);
+    }
+
+    private static String stream(RenderableExpression expression, RenderMode<Node> mode) throws IOException {
+        StringWriter out = new StringWriter();
+        expression.render(mode, MathMLWriter.of(out), RenderOptions.DEFAULT);
+        return out.toString();
+    }
+
+    private static boolean check(String name, Render render) {
+        try {
+            render.render();
+            System.out.printf("%-24s ok%n", name);
+            return true;
+        } catch(StackOverflowError | RuntimeException | IOException e) {
+            System.out.printf("%-24s %s%n", name, e);
+            return false;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Render {
+        Object render() throws IOException;
+    }
+}
@@ -0,0 +1,19 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import com.github.rccookie.math.rendering.RenderMode;
+
+/**
+ * The render modes to benchmark. MathML is rendered as a complete <code>math</code> node.
+ */
+public enum Format {
+    INLINE(RenderMode.INLINE),
+    ASCII_ART(RenderMode.ASCII_ART),
+    LATEX(RenderMode.LATEX),
+    MATH_ML(RenderMode.MATH_ML);
+
+    final RenderMode<?> mode;
+
+    Format(RenderMode<?> mode) {
+        this.mode = mode;
+    }
+}
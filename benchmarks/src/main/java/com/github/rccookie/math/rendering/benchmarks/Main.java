@@ -0,0 +1,36 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks selected by the usual JMH command line options, always with the GC
+ * profiler. It reports the allocated bytes per operation (<code>gc.alloc.rate.norm</code>)
+ * next to the time, so that changes to the rendering can be judged by both.
+ */
+public final class Main {
+
+    private Main() { throw new UnsupportedOperationException(); }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        if(commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        Runner runner = new Runner(new OptionsBuilder()
+                .parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .build()
+        );
+        if(commandLine.shouldList())
+            runner.list();
+        else runner.run();
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders a small expression of each node type in each render mode and character set.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeBenchmark {
+
+    @Param
+    public NodeType node;
+    @Param
+    public Format format;
+    @Param
+    public Charset charset;
+
+    private RenderableExpression expression;
+    private RenderOptions options;
+
+    @Setup
+    public void setup() {
+        expression = node.create();
+        options = RenderOptions.DEFAULT.setCharset(charset.charset);
+    }
+
+    @Benchmark
+    public Object render() {
+        return expression.render(format.mode, options);
+    }
+}
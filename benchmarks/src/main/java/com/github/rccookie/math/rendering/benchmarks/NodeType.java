@@ -0,0 +1,64 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.util.function.Supplier;
+
+import com.github.rccookie.math.rendering.Bracket;
+import com.github.rccookie.math.rendering.RenderableExpression;
+
+import static com.github.rccookie.math.rendering.RenderableExpression.*;
+
+/**
+ * One small expression for each implementation of {@link RenderableExpression}, with the
+ * implementation as its root. The operands are kept simple so that the root node dominates
+ * the rendering time.
+ */
+public enum NodeType {
+    AUGMENTED_GRID(() -> mid(grid(2, 2, x(), y(), num(1), num(0)), column(num(3), num(4)))),
+    BIG_SYMBOL(() -> sum(eq(RenderableExpression.name("k"), num(0)), RenderableExpression.name("n"), pow(RenderableExpression.name("k"), num(2)))),
+    BRACKET_LITERAL(() -> left(Bracket.CURLY, frac(x(), num(2)))),
+    BRACKETS(() -> par(plus(x(), num(1)))),
+    CONCATENATION(() -> implicit(num(2), x())),
+    EXP(() -> exp(frac(x(), num(2)))),
+    FRACTION(() -> frac(plus(x(), num(1)), minus(y(), num(1)))),
+    GRID(() -> grid(3, 3, x(), num(0), num(0), num(0), y(), num(0), num(0), num(0), RenderableExpression.name("z"))),
+    INTEGRAL(() -> integral(num(0), inf(), exp(neg(x())), "x")),
+    LIST(() -> list(x(), y(), num(3))),
+    LITERAL(() -> RenderableExpression.name("x")),
+    MATRIX_BRACKETS(() -> matrix(2, 2, x(), y(), num(1), num(0))),
+    MIDDLE(() -> mid(x(), greater(x(), num(0)))),
+    NEGATE(() -> neg(x())),
+    NUMBER_LITERAL(() -> num("12345")),
+    NUMERIC_GRID(() -> grid(new double[][] { { 1.5, 2 }, { -3, 0.25 } })),
+    RATIONAL(() -> num(22, 7)),
+    ROOT(() -> root(num(3), plus(x(), num(1)))),
+    SIMPLE_INFIX_OPERATION(() -> plus(x(), y())),
+    SIMPLE_POSTFIX_OPERATION(() -> factorial(x())),
+    SIMPLE_PREFIX_OPERATION(() -> not(x())),
+    SPECIAL_LITERAL(() -> pi()),
+    SUBSCRIPT(() -> sub(x(), num(1))),
+    SUPER_SUBSCRIPT(() -> pow(sub(x(), num(1)), num(2))),
+    SUPERSCRIPT(() -> pow(x(), num(2))),
+    TEXT(() -> text("for all x")),
+    TRANSPOSITION(() -> transp(RenderableExpression.name("A")));
+
+    private final Supplier<RenderableExpression> factory;
+
+    NodeType(Supplier<RenderableExpression> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Creates the sample expression of this node type.
+     */
+    public RenderableExpression create() {
+        return factory.get();
+    }
+
+    private static RenderableExpression x() {
+        return RenderableExpression.name("x");
+    }
+
+    private static RenderableExpression y() {
+        return RenderableExpression.name("y");
+    }
+}
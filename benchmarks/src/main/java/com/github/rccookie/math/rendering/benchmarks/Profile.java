@@ -0,0 +1,40 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import static com.github.rccookie.math.rendering.benchmarks.CorpusGenerator.Kind.*;
+
+/**
+ * Corpus generator settings for the expression shapes seen in practice, including the
+ * pathological ones.
+ */
+public enum Profile {
+    /**
+     * Small, mixed expressions using all kinds of nodes.
+     */
+    MIXED(CorpusGenerator.DEFAULT),
+    /**
+     * Long left-associative chains of binary operators.
+     */
+    DEEP_CHAINS(CorpusGenerator.DEFAULT.setInnerKinds(INFIX).setLeafProbability(0).setMaxDepth(256).setMaxNodes(512)),
+    /**
+     * Fractions nested deeply into each other.
+     */
+    NESTED_FRACTIONS(CorpusGenerator.DEFAULT.setInnerKinds(FRACTION, BRACKETS).setLeafProbability(0.1).setMaxDepth(48).setMaxNodes(128)),
+    /**
+     * Lists, calls and vectors with many elements.
+     */
+    WIDE_LISTS(CorpusGenerator.DEFAULT.setInnerKinds(LIST, CALL, VECTOR).setMaxDepth(2).setMaxFanOut(256).setMaxNodes(1024)),
+    /**
+     * Large matrices of expressions and numbers.
+     */
+    HUGE_MATRICES(CorpusGenerator.DEFAULT.setInnerKinds(MATRIX, NUMERIC_MATRIX, AUGMENTED_MATRIX, ELIDED_MATRIX).setMaxDepth(2).setMaxFanOut(48).setMaxNodes(4096)),
+    /**
+     * Numbers with hundreds of digits.
+     */
+    HUGE_NUMBERS(CorpusGenerator.DEFAULT.setInnerKinds(INFIX, FRACTION, LIST).setWeight(INTEGER, 1).setWeight(NAME, 0).setWeight(SPECIAL, 0).setWeight(TEXT, 0).setMaxDigits(500));
+
+    public final CorpusGenerator generator;
+
+    Profile(CorpusGenerator generator) {
+        this.generator = generator;
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Renders expressions of growing depth, breadth and matrix size, to show how the rendering
+ * time scales with the size of the expression.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ScalingBenchmark {
+
+    @Param
+    public Shape shape;
+    @Param({ "1", "4", "16", "64", "256" })
+    public int size;
+    @Param
+    public Format format;
+
+    private RenderableExpression expression;
+
+    @Setup
+    public void setup() {
+        expression = shape.create(size);
+    }
+
+    @Benchmark
+    public Object render() {
+        return expression.render(format.mode, RenderOptions.DEFAULT);
+    }
+}
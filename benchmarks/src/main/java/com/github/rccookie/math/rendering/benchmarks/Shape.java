@@ -0,0 +1,76 @@
+package com.github.rccookie.math.rendering.benchmarks;
+
+import com.github.rccookie.math.rendering.RenderableExpression;
+
+import static com.github.rccookie.math.rendering.RenderableExpression.*;
+
+/**
+ * Expressions whose size grows with a single parameter.
+ */
+public enum Shape {
+    /**
+     * A left-associative chain of additions, nested size levels deep.
+     */
+    CHAIN {
+        @Override
+        public RenderableExpression create(int size) {
+            RenderableExpression e = RenderableExpression.name("x");
+            for(int i=1; i<size; i++)
+                e = plus(e, num(i));
+            return e;
+        }
+    },
+    /**
+     * Fractions nested size levels deep, alternating between numerator and denominator.
+     */
+    NESTED_FRACTIONS {
+        @Override
+        public RenderableExpression create(int size) {
+            RenderableExpression e = RenderableExpression.name("x");
+            for(int i=1; i<size; i++)
+                e = i % 2 == 0 ? frac(e, num(i)) : frac(num(i), plus(num(1), e));
+            return e;
+        }
+    },
+    /**
+     * A flat list with size elements.
+     */
+    LIST {
+        @Override
+        public RenderableExpression create(int size) {
+            RenderableExpression[] elements = new RenderableExpression[size];
+            for(int i=0; i<size; i++)
+                elements[i] = i % 2 == 0 ? num(i) : frac(RenderableExpression.name("x"), num(i));
+            return list(elements);
+        }
+    },
+    /**
+     * A size x size matrix of expression cells.
+     */
+    MATRIX {
+        @Override
+        public RenderableExpression create(int size) {
+            RenderableExpression[] cells = new RenderableExpression[size * size];
+            for(int i=0; i<cells.length; i++)
+                cells[i] = i % 3 == 0 ? frac(num(i), num(7)) : sub(RenderableExpression.name("a"), num(i));
+            return matrix(size, size, cells);
+        }
+    },
+    /**
+     * A size x size matrix of doubles.
+     */
+    NUMERIC_MATRIX {
+        @Override
+        public RenderableExpression create(int size) {
+            double[][] rows = new double[size][size];
+            for(int i=0; i<size; i++) for(int j=0; j<size; j++)
+                rows[i][j] = (i - j) * 0.25;
+            return matrix(rows);
+        }
+    };
+
+    /**
+     * Creates the expression of the given size.
+     */
+    public abstract RenderableExpression create(int size);
+}
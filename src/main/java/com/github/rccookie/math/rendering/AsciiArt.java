@@ -3,7 +3,6 @@ package com.github.rccookie.math.rendering;
 import java.util.Arrays;
 import java.util.function.IntFunction;
 
-import com.github.rccookie.geometry.IRect;
 import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
 
@@ -13,42 +12,89 @@ import static com.github.rccookie.math.rendering.Utils.blank;
 
 public final class AsciiArt {
 
-    private final String[] lines;
+    /**
+     * Either the (padded) lines of this ascii art, or the {@link Layout} to paint them
+     * from once they are first needed.
+     */
+    private volatile Object content;
+    private final int width, height;
     private final int center;
+    /**
+     * Number of non-blank characters, or -1 if unknown.
+     */
+    private final int glyphs;
+    /**
+     * Summary of the code points contained in this ascii art.
+     */
+    final CodePoints codePoints;
 
     public AsciiArt(String value) {
-        lines = value.lines().toArray(String[]::new);
-        center = lines.length / 2;
-        pad();
+        this(value.lines().toArray(String[]::new), false);
     }
 
     public AsciiArt(int height, IntFunction<String> lineGenerator) {
-        lines = new String[height];
-        center = height / 2;
-        for(int i=0; i<lines.length; i++)
-            lines[i] = Arguments.checkNull(lineGenerator.apply(i), "lineGenerator.apply("+i+")");
-        pad();
+        this(generateLines(height, lineGenerator), false);
     }
 
     public AsciiArt(String[] lines) {
-        this.lines = Arguments.checkNull(lines, "lines").clone();
-        center = lines.length / 2;
-        pad();
+        this(Arguments.checkNull(lines, "lines").clone(), false);
     }
 
-    private AsciiArt(String[] lines, int center) {
-        this.lines = lines;
+    private AsciiArt(String[] lines, boolean unused) {
+        this(lines, lines.length / 2);
+    }
+
+    AsciiArt(String[] lines, int center) {
+        content = lines;
+        width = pad(lines);
+        height = lines.length;
         this.center = center;
+        glyphs = countGlyphs(lines);
+        codePoints = CodePoints.of(lines);
+    }
+
+    AsciiArt(int width, int height, int center, Layout layout) {
+        content = layout;
+        this.width = width;
+        this.height = height;
+        this.center = center;
+        glyphs = layout.glyphs();
+        codePoints = CodePoints.of(layout, height);
+    }
+
+    private AsciiArt(AsciiArt art, int center) {
+        content = art.content;
+        width = art.width;
+        height = art.height;
+        this.center = center;
+        glyphs = art.glyphs;
+        codePoints = art.codePoints;
+    }
+
+    private static String[] generateLines(int height, IntFunction<String> lineGenerator) {
+        String[] lines = new String[height];
+        for(int i=0; i<lines.length; i++)
+            lines[i] = Arguments.checkNull(lineGenerator.apply(i), "lineGenerator.apply("+i+")");
+        return lines;
+    }
+
+    private static int pad(String[] lines) {
+        if(lines.length == 0) return 0;
+        int w = lines[0].length();
+        for(int i=1; i<lines.length; i++)
+            if(lines[i].length() > w) w = lines[i].length();
+        for(int i=0; i<lines.length; i++)
+            if(lines[i].length() != w)
+                lines[i] = lines[i] + blank(w - lines[i].length());
+        return w;
     }
 
-    private void pad() {
-        if(lines.length == 0) return;
-        int w = this.lines[0].length();
-        for(int i=1; i<this.lines.length; i++)
-            if(this.lines[i].length() > w) w = this.lines[i].length();
-        for(int i=0; i<this.lines.length; i++)
-            if(this.lines[i].length() != w)
-                this.lines[i] = this.lines[i] + blank(w - this.lines[i].length());
+    private static int countGlyphs(String[] lines) {
+        int count = 0;
+        for(String line : lines)
+            for(int i=0; i<line.length(); i++)
+                if(line.charAt(i) != ' ') count++;
+        return count;
     }
 
     public int2 size() {
@@ -56,11 +102,11 @@ public final class AsciiArt {
     }
 
     public int width() {
-        return lines.length == 0 ? 0 : lines[0].length();
+        return width;
     }
 
     public int height() {
-        return lines.length;
+        return height;
     }
 
     public int center() {
@@ -68,20 +114,74 @@ public final class AsciiArt {
     }
 
     public String getLine(int index) {
-        return lines[index];
+        return lines()[index];
     }
 
     @Override
     public String toString() {
-        return String.join("\n", lines);
+        return String.join("\n", lines());
+    }
+
+    /**
+     * Returns the character at the given position, without painting this ascii art if it
+     * has not been painted yet.
+     */
+    char charAt(int x, int y) {
+        Arguments.checkRange(x, 0, width);
+        Arguments.checkRange(y, 0, height);
+        AsciiArt art = this;
+        Layout layout;
+        outer: while((layout = art.layout()) != null) {
+            for(int i=layout.parts.length-1; i>=0; i--) {
+                AsciiArt part = layout.parts[i];
+                int px = x - layout.positions[2*i], py = y - layout.positions[2*i+1];
+                if(px >= 0 && py >= 0 && px < part.width && py < part.height) {
+                    art = part;
+                    x = px;
+                    y = py;
+                    continue outer;
+                }
+            }
+            return ' ';
+        }
+        return art.getLine(y).charAt(x);
+    }
+
+    /**
+     * Returns whether this ascii art contains any blank character, equivalent to
+     * <code>toString().contains(" ")</code>.
+     */
+    boolean containsBlank() {
+        if(glyphs >= 0) return glyphs < width * height;
+        for(String line : lines())
+            if(line.indexOf(' ') >= 0) return true;
+        return false;
+    }
+
+    /**
+     * Returns the layout to paint this ascii art from, or <code>null</code> if it has
+     * already been painted.
+     */
+    Layout layout() {
+        Object content = this.content;
+        return content instanceof Layout ? (Layout) content : null;
+    }
+
+    private String[] lines() {
+        Object content = this.content;
+        if(content instanceof String[])
+            return (String[]) content;
+        String[] lines = new AsciiCanvas(width, height).draw(this, 0, 0).toLines();
+        this.content = lines;
+        return lines;
     }
 
     public AsciiArt setCenter(int center) {
-        return new AsciiArt(lines, Arguments.checkRange(center, 0, lines.length));
+        return new AsciiArt(this, Arguments.checkRange(center, 0, height));
     }
 
     public AsciiArt recalculateCenter() {
-        return setCenter(lines.length / 2);
+        return setCenter(height / 2);
     }
 
     @Contract(pure = true)
@@ -91,12 +191,7 @@ public final class AsciiArt {
 
     @Contract(pure = true)
     public AsciiArt appendTop(AsciiArt a, boolean keepCenter) {
-        String[] lines = new String[Math.max(this.lines.length, a.lines.length)];
-        for(int i=0; i<lines.length; i++) {
-            String line = i < this.lines.length ? this.lines[i] : blank(width());
-            lines[i] = line + (i < a.lines.length ? a.lines[i] : blank(a.width()));
-        }
-        return new AsciiArt(lines, keepCenter ? center : a.center);
+        return new AsciiLayout(this).appendTop(a, keepCenter).toAsciiArt();
     }
 
     @Contract(pure = true)
@@ -106,27 +201,17 @@ public final class AsciiArt {
 
     @Contract(pure = true)
     public AsciiArt appendBottom(AsciiArt a, boolean keepCenter) {
-        String[] lines = new String[Math.max(this.lines.length, a.lines.length)];
-        for(int i=0; i<lines.length; i++) {
-            String line = i < this.lines.length ? this.lines[this.lines.length - i - 1] : blank(width());
-            lines[lines.length - i - 1] = line + (i < a.lines.length ? a.lines[a.lines.length - i - 1] : blank(a.width()));
-        }
-        return new AsciiArt(lines, keepCenter ? Math.max(0, a.lines.length-lines.length) + center : Math.max(0, lines.length-a.lines.length) + a.center);
+        return new AsciiLayout(this).appendBottom(a, keepCenter).toAsciiArt();
     }
 
     @Contract(pure = true)
     public AsciiArt appendCenter(AsciiArt a) {
-        return draw(a, new int2(width(), center - a.center));
+        return new AsciiLayout(this).appendCenter(a).toAsciiArt();
     }
 
     @Contract(pure = true)
     public AsciiArt append(AsciiArt a, RenderableExpression.OperatorAlignment alignment, boolean keepCenter) {
-        switch(Arguments.checkNull(alignment, "alignment")) {
-            case TOP: return appendTop(a, keepCenter);
-            case CENTER: return appendCenter(a);
-            case BOTTOM: return appendBottom(a, keepCenter);
-            default: throw new AssertionError();
-        }
+        return new AsciiLayout(this).append(a, alignment, keepCenter).toAsciiArt();
     }
 
     @Contract(pure = true)
@@ -136,43 +221,7 @@ public final class AsciiArt {
 
     @Contract(pure = true)
     public AsciiArt draw(AsciiArt a, int2 position, boolean keepCenter) {
-        int2 min = int2.min(int2.zero, position);
-        IRect selfArea = new IRect(min.negated(), min.negated().add(size()));
-        IRect aArea = new IRect(position.subed(min), position.subed(min).add(a.size()));
-
-        int w = Math.max(selfArea.max.x, aArea.max.x);
-        String[] lines = new String[Math.max(selfArea.max.y, aArea.max.y)];
-
-        for(int i=0; i<lines.length; i++) {
-            if(i >= selfArea.min.y && i < selfArea.max.y) {
-                String line;
-                if(i >= aArea.min.y && i < aArea.max.y) {
-                    if(selfArea.min.x == 0) {
-                        if(aArea.min.x < selfArea.max.x)
-                            line = this.lines[i-selfArea.min.y].substring(0, aArea.min.x);
-                        else line = this.lines[i-selfArea.min.y] + blank(aArea.min.x - selfArea.max.x);
-                        line += a.lines[i-aArea.min.y];
-                        if(w != aArea.max.x)
-                            line += this.lines[i-selfArea.min.y].substring(line.length());
-                    }
-                    else {
-                        line = a.lines[i-aArea.min.y];
-                        if(w != aArea.max.x) {
-                            if(selfArea.min.x < aArea.max.x)
-                                line += this.lines[i - selfArea.min.y].substring(aArea.max.x - selfArea.min.x);
-                            else line += blank(selfArea.min.x - aArea.max.x) + this.lines[i - selfArea.min.y];
-                        }
-                    }
-                }
-                else line = blank(selfArea.min.x) + this.lines[i - selfArea.min.y] + blank(w - selfArea.max.x);
-                lines[i] = line;
-            }
-            else if(i >= aArea.min.y && i < aArea.max.y)
-                lines[i] = blank(aArea.min.x) + a.lines[i - aArea.min.y] + blank(w - aArea.max.x);
-            else lines[i] = blank(w);
-        }
-
-        return new AsciiArt(lines, keepCenter ? Math.max(0, -position.y) + center : Math.max(0, position.y) + a.center);
+        return new AsciiLayout(this).draw(a, position.x, position.y, keepCenter).toAsciiArt();
     }
 
     public static AsciiArt empty(int2 size) {
@@ -181,4 +230,126 @@ public final class AsciiArt {
         Arrays.fill(lines, line);
         return new AsciiArt(lines, size.y / 2);
     }
+
+
+    /**
+     * The measured but not yet painted parts of an ascii art, as built by {@link AsciiLayout}.
+     * The parts are painted in order, each one completely replacing the area it covers.
+     */
+    static final class Layout {
+
+        final AsciiArt[] parts;
+        /**
+         * The top left corner of each part, as x,y pairs.
+         */
+        final int[] positions;
+        /**
+         * Whether the area of the respective part may already contain characters of previous
+         * parts, and thus has to be cleared before painting a part which is a layout itself.
+         */
+        final boolean[] overlaps;
+
+        Layout(AsciiArt[] parts, int[] positions, boolean[] overlaps) {
+            this.parts = parts;
+            this.positions = positions;
+            this.overlaps = overlaps;
+        }
+
+        private int glyphs() {
+            int glyphs = 0;
+            for(int i=0; i<parts.length; i++) {
+                if(overlaps[i] || parts[i].glyphs < 0) return -1;
+                glyphs += parts[i].glyphs;
+            }
+            return glyphs;
+        }
+    }
+
+
+    /**
+     * An over-approximation of the code points contained in an ascii art, including the
+     * line separators of {@link #toString()}. Consists of a mask of the {@link #block(int) blocks}
+     * of the code points and, as long as there are only few of them, the distinct code points
+     * themselves. Computed once per ascii art and merged from the parts of a layout.
+     */
+    static final class CodePoints {
+
+        private static final int MAX_DISTINCT = 8;
+        private static final CodePoints NONE = new CodePoints(0, new int[0]);
+
+        /**
+         * Bit mask of the blocks containing the code points.
+         */
+        final long blocks;
+        /**
+         * The distinct code points in ascending order, or <code>null</code> if there are too many.
+         */
+        final int[] distinct;
+
+        private CodePoints(long blocks, int[] distinct) {
+            this.blocks = blocks;
+            this.distinct = distinct;
+        }
+
+        /**
+         * Returns the block of the given code point, a number in the range [0,64). Block
+         * 0 contains the ascii characters, the blocks 1 to 62 contain 256 code points each,
+         * and block 63 contains all remaining code points.
+         */
+        static int block(int codePoint) {
+            if(codePoint < 128) return codePoint < 0 ? 63 : 0;
+            return Math.min((codePoint >>> 8) + 1, 63);
+        }
+
+        private static CodePoints of(String[] lines) {
+            Builder builder = new Builder();
+            if(lines.length > 1) builder.add('\n');
+            for(String line : lines)
+                for(int i=0; i<line.length(); i++)
+                    builder.add(line.codePointAt(i));
+            return builder.build();
+        }
+
+        private static CodePoints of(Layout layout, int height) {
+            Builder builder = new Builder();
+            if(height > 1) builder.add('\n');
+            builder.add(' ');
+            for(AsciiArt part : layout.parts)
+                builder.add(part.codePoints);
+            return builder.build();
+        }
+
+        private static final class Builder {
+            long blocks = 0;
+            int[] distinct = new int[MAX_DISTINCT];
+            int count = 0;
+
+            void add(int codePoint) {
+                blocks |= 1L << block(codePoint);
+                if(distinct == null) return;
+                int index = Arrays.binarySearch(distinct, 0, count, codePoint);
+                if(index >= 0) return;
+                if(count == MAX_DISTINCT) {
+                    distinct = null;
+                    return;
+                }
+                index = -index - 1;
+                System.arraycopy(distinct, index, distinct, index + 1, count - index);
+                distinct[index] = codePoint;
+                count++;
+            }
+
+            void add(CodePoints codePoints) {
+                blocks |= codePoints.blocks;
+                if(distinct == null) return;
+                if(codePoints.distinct == null) distinct = null;
+                else for(int c : codePoints.distinct) add(c);
+            }
+
+            CodePoints build() {
+                if(blocks == 0) return NONE;
+                return new CodePoints(blocks, distinct != null ? Arrays.copyOf(distinct, count) : null);
+            }
+        }
+    }
 }
@@ -0,0 +1,72 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+/**
+ * A mutable, fixed size character grid which ascii art gets painted onto. Ascii art which
+ * has only been laid out using {@link AsciiLayout} is painted part by part, directly into
+ * the grid, without creating the lines of any of the intermediate parts.
+ */
+final class AsciiCanvas {
+
+    private final char[][] rows;
+    private final int width;
+
+    AsciiCanvas(int width, int height) {
+        rows = new char[height][width];
+        for(char[] row : rows)
+            Arrays.fill(row, ' ');
+        this.width = width;
+    }
+
+    /**
+     * Paints the given ascii art onto this canvas, with its top left corner at the given
+     * position. The ascii art has to fit onto the canvas.
+     */
+    AsciiCanvas draw(AsciiArt art, int x, int y) {
+        Deque<Object[]> stack = new ArrayDeque<>();
+        stack.push(new Object[] { art, x, y, false });
+        while(!stack.isEmpty()) {
+            Object[] entry = stack.pop();
+            AsciiArt a = (AsciiArt) entry[0];
+            int ax = (int) entry[1], ay = (int) entry[2];
+
+            AsciiArt.Layout layout = a.layout();
+            if(layout == null) {
+                blit(a, ax, ay);
+                continue;
+            }
+            if((boolean) entry[3])
+                for(int i=0; i<a.height(); i++)
+                    Arrays.fill(rows[ay + i], ax, ax + a.width(), ' ');
+            for(int i=layout.parts.length-1; i>=0; i--)
+                stack.push(new Object[] {
+                        layout.parts[i],
+                        ax + layout.positions[2*i],
+                        ay + layout.positions[2*i+1],
+                        layout.overlaps[i]
+                });
+        }
+        return this;
+    }
+
+    String[] toLines() {
+        String[] lines = new String[rows.length];
+        for(int i=0; i<lines.length; i++)
+            lines[i] = new String(rows[i], 0, width);
+        return lines;
+    }
+
+    @Override
+    public String toString() {
+        return String.join("\n", toLines());
+    }
+
+    private void blit(AsciiArt a, int x, int y) {
+        int w = a.width();
+        for(int i=0; i<a.height(); i++)
+            a.getLine(i).getChars(0, w, rows[y + i], x);
+    }
+}
@@ -0,0 +1,91 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.Arrays;
+
+import com.github.rccookie.util.Arguments;
+
+/**
+ * Lays out ascii art in rows and columns. Each column is as wide as its widest cell, and
+ * each row as high as its highest cell. The cells are centered within their slots, or placed
+ * at the top of it for top-aligned columns. Unlike placing the cells one by one using an
+ * {@link AsciiLayout}, the slots are measured once and the cells are known not to overlap,
+ * thus the resulting layout is created in a single pass and can be painted without clearing
+ * any areas.
+ */
+final class AsciiGrid {
+
+    private final AsciiArt[][] cells;
+    /**
+     * The number of blank columns left of each column, except the first.
+     */
+    private final int[] gaps;
+    private final boolean[] topAligned;
+
+    /**
+     * Creates a new grid with the given dimensions.
+     *
+     * @param rows The number of rows, at least 1
+     * @param columns The number of columns, at least 1
+     * @param gap The number of blank columns between two columns
+     */
+    AsciiGrid(int rows, int columns, int gap) {
+        cells = new AsciiArt[Arguments.checkRange(rows, 1, null)][Arguments.checkRange(columns, 1, null)];
+        gaps = new int[columns];
+        Arrays.fill(gaps, 1, columns, gap);
+        topAligned = new boolean[columns];
+    }
+
+    AsciiGrid set(int row, int column, AsciiArt cell) {
+        cells[row][column] = Arguments.checkNull(cell, "cell");
+        return this;
+    }
+
+    /**
+     * Sets the number of blank columns left of the given column.
+     */
+    AsciiGrid setGap(int column, int gap) {
+        gaps[Arguments.checkRange(column, 1, gaps.length)] = gap;
+        return this;
+    }
+
+    /**
+     * Sets the cells of the given column to be placed at the top of their slot, instead of
+     * being centered vertically.
+     */
+    AsciiGrid setTopAligned(int column) {
+        topAligned[column] = true;
+        return this;
+    }
+
+    /**
+     * Returns the laid out grid, centered vertically. All cells have to be set.
+     */
+    AsciiArt toAsciiArt() {
+        int rows = cells.length, columns = cells[0].length;
+        int[] widths = new int[columns], heights = new int[rows];
+        for(int i=0; i<rows; i++) for(int j=0; j<columns; j++) {
+            AsciiArt cell = Arguments.checkNull(cells[i][j], "cells[" + i + "][" + j + "]");
+            widths[j] = Math.max(widths[j], cell.width());
+            heights[i] = Math.max(heights[i], cell.height());
+        }
+
+        AsciiArt[] parts = new AsciiArt[rows * columns];
+        int[] positions = new int[2 * parts.length];
+        int width = 0, height = 0;
+        for(int i=0, y=0, k=0; i<rows; y+=heights[i], i++) {
+            for(int j=0, x=0; j<columns; x+=widths[j], j++, k++) {
+                x += gaps[j];
+                AsciiArt cell = parts[k] = cells[i][j];
+                positions[2*k] = x + (widths[j] - cell.width() + 1) / 2;
+                positions[2*k+1] = topAligned[j] ? y : y + (heights[i] - cell.height() + 1) / 2;
+                width = Math.max(width, positions[2*k] + cell.width());
+                height = Math.max(height, positions[2*k+1] + cell.height());
+            }
+        }
+
+        int center = height / 2;
+        if(parts.length == 1 && parts[0].width() == width && parts[0].height() == height)
+            return parts[0].center() == center ? parts[0] : parts[0].setCenter(center);
+        return new AsciiArt(width, height, center, new AsciiArt.Layout(parts, positions, new boolean[parts.length]));
+    }
+}
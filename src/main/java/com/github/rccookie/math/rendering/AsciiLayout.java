@@ -0,0 +1,154 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.Arrays;
+
+import com.github.rccookie.util.Arguments;
+
+/**
+ * Composes ascii art by only measuring and positioning the individual parts, without
+ * painting any characters. The resulting {@link AsciiArt} is painted in a single pass once
+ * its content is actually requested, so that nested compositions don't copy the characters
+ * of every part once per nesting level. Supports the same composition operations as
+ * {@link AsciiArt} with the same semantics.
+ */
+final class AsciiLayout {
+
+    private AsciiArt[] parts = new AsciiArt[4];
+    /**
+     * Absolute x,y positions of the parts.
+     */
+    private int[] positions = new int[8];
+    private boolean[] overlaps = new boolean[4];
+    private int size = 0;
+
+    /**
+     * Absolute bounds of the layout, max exclusive.
+     */
+    private int minX = 0, minY = 0, maxX = 0, maxY = 0;
+    /**
+     * Absolute center line.
+     */
+    private int center = 0;
+
+    AsciiLayout() { }
+
+    AsciiLayout(AsciiArt art) {
+        draw(art, 0, 0, false);
+    }
+
+    int width() {
+        return maxX - minX;
+    }
+
+    int height() {
+        return maxY - minY;
+    }
+
+    int center() {
+        return center - minY;
+    }
+
+    AsciiLayout setCenter(int center) {
+        this.center = minY + Arguments.checkRange(center, 0, height());
+        return this;
+    }
+
+    AsciiLayout appendTop(AsciiArt a) {
+        return appendTop(a, true);
+    }
+
+    AsciiLayout appendTop(AsciiArt a, boolean keepCenter) {
+        return draw(a, width(), 0, keepCenter);
+    }
+
+    AsciiLayout appendBottom(AsciiArt a) {
+        return appendBottom(a, true);
+    }
+
+    AsciiLayout appendBottom(AsciiArt a, boolean keepCenter) {
+        return draw(a, width(), height() - a.height(), keepCenter);
+    }
+
+    AsciiLayout appendCenter(AsciiArt a) {
+        return draw(a, width(), center() - a.center());
+    }
+
+    AsciiLayout append(AsciiArt a, RenderableExpression.OperatorAlignment alignment, boolean keepCenter) {
+        switch(Arguments.checkNull(alignment, "alignment")) {
+            case TOP: return appendTop(a, keepCenter);
+            case CENTER: return appendCenter(a);
+            case BOTTOM: return appendBottom(a, keepCenter);
+            default: throw new AssertionError();
+        }
+    }
+
+    AsciiLayout draw(AsciiArt a, int x, int y) {
+        return draw(a, x, y, true);
+    }
+
+    /**
+     * Places the given ascii art at the specified position, relative to the current top left
+     * corner, replacing anything previously placed in that area. The layout grows as needed;
+     * if it grows to the top or to the left, the coordinate system shifts accordingly.
+     */
+    AsciiLayout draw(AsciiArt a, int x, int y, boolean keepCenter) {
+        x += minX;
+        y += minY;
+        add(a, x, y);
+        if(!keepCenter) center = y + a.center();
+        return this;
+    }
+
+    /**
+     * Places the given character <code>length</code> times into a single row, starting at the
+     * given position. The layout grows as needed, like for {@link #draw(AsciiArt, int, int)}.
+     */
+    AsciiLayout fill(char c, int x, int y, int length) {
+        char[] line = new char[length];
+        Arrays.fill(line, c);
+        add(new AsciiArt(new String[] { new String(line) }, 0), minX + x, minY + y);
+        return this;
+    }
+
+    AsciiArt toAsciiArt() {
+        int width = width(), height = height(), center = center();
+        if(size == 1 && positions[0] == minX && positions[1] == minY
+           && parts[0].width() == width && parts[0].height() == height && center <= height)
+            return parts[0].center() == center ? parts[0] : parts[0].setCenter(center);
+
+        int[] positions = Arrays.copyOf(this.positions, 2 * size);
+        for(int i=0; i<size; i++) {
+            positions[2*i] -= minX;
+            positions[2*i+1] -= minY;
+        }
+        return new AsciiArt(width, height, center, new AsciiArt.Layout(
+                Arrays.copyOf(parts, size),
+                positions,
+                Arrays.copyOf(overlaps, size)
+        ));
+    }
+
+    @Override
+    public String toString() {
+        return toAsciiArt().toString();
+    }
+
+    private void add(AsciiArt a, int x, int y) {
+        if(size == parts.length) {
+            parts = Arrays.copyOf(parts, 2 * size);
+            positions = Arrays.copyOf(positions, 4 * size);
+            overlaps = Arrays.copyOf(overlaps, 2 * size);
+        }
+        int right = x + a.width(), bottom = y + a.height();
+        parts[size] = a;
+        positions[2*size] = x;
+        positions[2*size+1] = y;
+        overlaps[size] = size != 0 && x < maxX && right > minX && y < maxY && bottom > minY;
+
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, right);
+        maxY = Math.max(maxY, bottom);
+        size++;
+    }
+}
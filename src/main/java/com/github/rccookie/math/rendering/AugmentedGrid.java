@@ -1,7 +1,9 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
-import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -10,12 +12,17 @@ import static com.github.rccookie.math.rendering.RenderMode.*;
 final class AugmentedGrid implements RenderableExpression {
 
     final Grid a, b;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     AugmentedGrid(Grid a, Grid b) {
         this.a = Arguments.checkNull(a, "a");
         this.b = Arguments.checkNull(b, "b");
         if(a.elements.length != b.elements.length)
             throw new IllegalArgumentException("Incompatible grid sizes");
+        hash = Objects.hash(getClass(), this.a, this.b);
     }
 
     @Override
@@ -23,6 +30,21 @@ final class AugmentedGrid implements RenderableExpression {
         return "augmented("+a+", "+b+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        AugmentedGrid that = (AugmentedGrid) o;
+        return hash == that.hash
+                && Structural.equal(a, that.a)
+                && Structural.equal(b, that.b);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.MID;
@@ -30,95 +52,100 @@ final class AugmentedGrid implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        options.budget.checkOutputSize((long) a.cellCount() + b.cellCount());
         options = options.setOutsidePrecedence(precedence());
 
         String comma = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? "," : ", ";
         String bar = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? "|" : " | ";
         String space = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? " " : "  ";
-        StringBuilder str = new StringBuilder();
         for(int i=0; i<a.elements.length; i++) {
-            if(i != 0) str.append(comma);
+            if(i != 0) out.append(comma);
 
             for(int j=0; j<a.elements[i].length; j++) {
-                if(j != 0) str.append(space);
-                str.append(a.elements[i][j].render(INLINE, options));
+                if(j != 0) out.append(space);
+                a.elements[i][j].render(INLINE, out, options);
             }
-            str.append(bar);
+            out.append(bar);
             for(int j=0; j<a.elements[i].length; j++) {
-                if(j != 0) str.append(space);
-                str.append(a.elements[i][j].render(INLINE, options));
+                if(j != 0) out.append(space);
+                a.elements[i][j].render(INLINE, out, options);
             }
         }
-        return str.toString();
     }
 
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
+        options.budget.checkOutputSize((long) a.cellCount() + b.cellCount());
         options = options.setOutsidePrecedence(precedence());
 
-        char vert = options.charset.orFallback('\u2502', '|');
-        int aLen = a.elements[0].length;
-
-        AsciiArt[][] elements = new AsciiArt[a.elements.length][aLen + b.elements[0].length];
-        for(int i=0; i<elements.length; i++) {
-            for(int j=0; j<aLen; j++)
-                elements[i][j] = a.elements[i][j].render(ASCII_ART, options);
-            for(int j=0; j<b.elements[i].length; j++)
-                elements[i][j+aLen] = b.elements[i][j].render(ASCII_ART, options);
-        }
-
-        int[] widths = new int[elements[0].length], heights = new int[elements.length];
-        for(int i=0; i<elements.length; i++) for(int j=0; j<elements[i].length; j++) {
-            widths[j] = Math.max(widths[j], elements[i][j].width());
-            heights[i] = Math.max(heights[i], elements[i][j].height());
+        int rows = a.elements.length, aLen = a.elements[0].length, bLen = b.elements[0].length;
+        RenderableExpression[] elements = new RenderableExpression[rows * (aLen + bLen)];
+        for(int i=0; i<rows; i++) {
+            System.arraycopy(a.elements[i], 0, elements, i * (aLen + bLen), aLen);
+            System.arraycopy(b.elements[i], 0, elements, i * (aLen + bLen) + aLen, bLen);
         }
+        AsciiArt[] cells = CellRenderer.render(elements, ASCII_ART, options, AsciiArt[]::new);
 
-        AsciiArt art = new AsciiArt("");
-        AsciiArt bar = new AsciiArt(""+vert);
         int spaces;
         if(options.spaceMode == RenderOptions.SpaceMode.COMPACT) spaces = 1;
         else if(options.spaceMode == RenderOptions.SpaceMode.FORCE) spaces = 2;
-        else spaces = elements.length != 1 ? 1 : 2;
+        else spaces = rows != 1 ? 1 : 2;
         int barSpace = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? 0 : 1;
 
-        for(int i=0, yOff=0; i<elements.length; yOff+=heights[i], i++) {
-            int xOff = 0;
-            for(int j=0; j<aLen; xOff+=widths[j]+spaces, j++) {
-                int w = widths[j], h = heights[i];
-                AsciiArt e = elements[i][j];
-                art = art.draw(e, new int2(xOff + (w - e.width() + 1) / 2, yOff + (h - e.height() + 1) / 2));
-            }
-            xOff += barSpace - spaces;
-            art = art.draw(i == elements.length-1 ? new AsciiArt("|") : bar, new int2(xOff, yOff));
-            xOff += barSpace + 1;
-            for(int j=0; j<b.elements[i].length; xOff+=widths[j+aLen]+spaces, j++) {
-                int w = widths[j+aLen], h = heights[i];
-                AsciiArt e = elements[i][j+aLen];
-                art = art.draw(e, new int2(xOff + (w - e.width() + 1) / 2, yOff + (h - e.height() + 1) / 2));
-            }
+        // The bar is a column of its own, one line per row
+        AsciiGrid grid = new AsciiGrid(rows, aLen + 1 + bLen, spaces)
+                .setGap(aLen, barSpace)
+                .setGap(aLen + 1, barSpace)
+                .setTopAligned(aLen);
+        AsciiArt bar = new AsciiArt(""+options.charset.orFallback('\u2502', '|'));
+        for(int i=0; i<rows; i++) {
+            for(int j=0; j<aLen; j++)
+                grid.set(i, j, cells[i * (aLen + bLen) + j]);
+            grid.set(i, aLen, i == rows-1 ? new AsciiArt("|") : bar);
+            for(int j=0; j<bLen; j++)
+                grid.set(i, aLen + 1 + j, cells[i * (aLen + bLen) + aLen + j]);
         }
-
-        return art.recalculateCenter();
+        return grid.toAsciiArt();
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        options.budget.checkOutputSize((long) a.cellCount() + b.cellCount());
         options = options.setOutsidePrecedence(precedence());
-        StringBuilder str = new StringBuilder("\\begin{matrix}");
+        out.append("\\begin{matrix}");
         for(int i=0; i<a.elements.length; i++) {
-            for(RenderableExpression e : a.elements[i])
-                str.append(e.render(LATEX, options)).append("&");
-            str.append("\\bigm|");
-            for(RenderableExpression e : b.elements[i])
-                str.append("&").append(e.render(LATEX, options));
+            for(RenderableExpression e : a.elements[i]) {
+                e.render(LATEX, out, options);
+                out.append("&");
+            }
+            out.append("\\bigm|");
+            for(RenderableExpression e : b.elements[i]) {
+                out.append("&");
+                e.render(LATEX, out, options);
+            }
             if(i != a.elements.length-1)
-                str.append("\\\\");
+                out.append("\\\\");
         }
-        return str.append("\\end{matrix}").toString();
+        out.append("\\end{matrix}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return new Middle(a,b).render(MATH_ML_NODE, options);
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        new Middle(a,b).render(MATH_ML_NODE, out, options);
     }
 }
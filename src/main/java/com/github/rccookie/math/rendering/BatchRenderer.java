@@ -0,0 +1,82 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+import com.github.rccookie.util.Arguments;
+
+/**
+ * Renders a batch of independent expressions concurrently. A few workers are started, each
+ * claiming the next expression not yet claimed, so the expressions are rendered roughly in
+ * order and the work is balanced even if some expressions take much longer than others.
+ */
+final class BatchRenderer<T> implements Runnable {
+
+    private final RenderableExpression[] expressions;
+    private final RenderMode<T> mode;
+    private final RenderOptions options;
+    private final java.util.List<CompletableFuture<T>> results;
+    /**
+     * Whether the cells of grids and lists are rendered sequentially, as the executor is not
+     * a fork-join pool which they could be rendered on in parallel.
+     */
+    private final boolean sequentialCells;
+    private final AtomicInteger next = new AtomicInteger();
+
+    private BatchRenderer(RenderableExpression[] expressions, RenderMode<T> mode, RenderOptions options, boolean sequentialCells) {
+        this.expressions = expressions;
+        this.mode = mode;
+        this.options = options;
+        this.sequentialCells = sequentialCells;
+        results = new ArrayList<>(expressions.length);
+        for(int i=0; i<expressions.length; i++)
+            results.add(new CompletableFuture<>());
+    }
+
+    static <T> java.util.List<CompletableFuture<T>> render(Collection<? extends RenderableExpression> expressions, RenderMode<T> mode, RenderOptions options, Executor executor) {
+        Arguments.checkNull(expressions, "expressions");
+        Arguments.checkNull(mode, "mode");
+        Arguments.checkNull(options, "options");
+        Arguments.checkNull(executor, "executor");
+        RenderableExpression[] array = Arguments.deepCheckNull(expressions.toArray(new RenderableExpression[0]), "expressions");
+
+        BatchRenderer<T> batch = new BatchRenderer<>(array, mode, options, !(executor instanceof ForkJoinPool));
+        int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism() : Runtime.getRuntime().availableProcessors();
+        int workers = Math.min(array.length, parallelism);
+        for(int i=0; i<workers; i++) {
+            try {
+                executor.execute(batch);
+            } catch(RejectedExecutionException e) {
+                // Every worker renders until no expressions are left, one is enough
+                if(i == 0) throw e;
+                break;
+            }
+        }
+        return batch.results;
+    }
+
+    @Override
+    public void run() {
+        if(sequentialCells)
+            CellRenderer.sequential(this::renderAll);
+        else renderAll();
+    }
+
+    private void renderAll() {
+        for(int i; (i = next.getAndIncrement()) < expressions.length; ) {
+            CompletableFuture<T> result = results.get(i);
+            if(result.isDone()) continue; // Cancelled
+            try {
+                result.complete(expressions[i].render(mode, options));
+            } catch(Throwable t) {
+                result.completeExceptionally(t);
+            }
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
-import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -17,12 +19,17 @@ final class BigSymbol implements RenderableExpression {
     @Nullable
     final RenderableExpression sub;
     final RenderableExpression value;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     BigSymbol(RenderableExpression symbol, @Nullable RenderableExpression sub, @Nullable RenderableExpression sup, RenderableExpression value) {
         this.symbol = Arguments.checkNull(symbol, "symbol");
         this.sup = sup;
         this.sub = sub;
         this.value = Arguments.checkNull(value, "value");
+        hash = Objects.hash(getClass(), this.symbol, this.sub, this.sup, this.value);
     }
 
     @Override
@@ -30,6 +37,23 @@ final class BigSymbol implements RenderableExpression {
         return "iter("+symbol+", "+sup+", "+sub+", "+value+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        BigSymbol that = (BigSymbol) o;
+        return hash == that.hash
+                && Structural.equal(symbol, that.symbol)
+                && Structural.equal(sub, that.sub)
+                && Structural.equal(sup, that.sup)
+                && Structural.equal(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.ITERATION;
@@ -37,53 +61,80 @@ final class BigSymbol implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence());
-        String header;
         if(sup == null) {
-            if(sub == null) header = symbol.render(INLINE, options);
-            else header = new Subscript(symbol, sub).render(INLINE, options);
+            if(sub == null) symbol.render(INLINE, out, options);
+            else new Subscript(symbol, sub).render(INLINE, out, options);
         }
         else if(sub == null)
-            header = new Superscript(symbol, sup).render(INLINE, options);
-        else header = new SuperSubscript(symbol, sup, sub).render(INLINE, options);
+            new Superscript(symbol, sup).render(INLINE, out, options);
+        else new SuperSubscript(symbol, sup, sub).render(INLINE, out, options);
 
-        return header + value.render(INLINE, options);
+        value.render(INLINE, out, options);
     }
 
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         options = options.setOutsidePrecedence(precedence());
         AsciiArt symbol = this.symbol.render(ASCII_ART, options);
-        AsciiArt art = symbol;
+        AsciiLayout art = new AsciiLayout(symbol);
         if(this.sub != null) {
             AsciiArt sub = this.sub.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MIN));
-            art = art.draw(sub, new int2((symbol.width() - sub.width()) / 2, art.height()));
+            art.draw(sub, (symbol.width() - sub.width()) / 2, art.height());
         }
         if(this.sup != null) {
             AsciiArt sup = this.sup.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MIN));
-            art = art.draw(sup, new int2((symbol.width() - sup.width() + 1) / 2, -sup.height()));
+            art.draw(sup, (symbol.width() - sup.width() + 1) / 2, -sup.height());
         }
         if(options.spaceMode != RenderOptions.SpaceMode.COMPACT)
-            art = art.appendTop(new AsciiArt(" "));
-        return art.appendCenter(this.value.render(ASCII_ART, options));
+            art.appendTop(new AsciiArt(" "));
+        return art.appendCenter(this.value.render(ASCII_ART, options)).toAsciiArt();
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence());
-        String str = symbol.render(LATEX, options);
-        if(sub != null) str += "_{"+sub.render(LATEX, options.setOutsidePrecedence(Precedence.MIN))+"}";
-        if(sup != null) str += "^{"+sup.render(LATEX, options.setOutsidePrecedence(Precedence.MIN))+"}";
-        return str+"{"+value.render(LATEX, options)+"}";
+        symbol.render(LATEX, out, options);
+        if(sub != null) {
+            out.append("_{");
+            sub.render(LATEX, out, options.setOutsidePrecedence(Precedence.MIN));
+            out.append("}");
+        }
+        if(sup != null) {
+            out.append("^{");
+            sup.render(LATEX, out, options.setOutsidePrecedence(Precedence.MIN));
+            out.append("}");
+        }
+        out.append("{");
+        value.render(LATEX, out, options);
+        out.append("}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence());
-        Node underOver = new Node("munderover");
-        underOver.children.add(symbol.render(MATH_ML_NODE, options));
-        underOver.children.add(Utils.orEmpty(sub, options.setOutsidePrecedence(Precedence.MIN)));
-        underOver.children.add(Utils.orEmpty(sup, options.setOutsidePrecedence(Precedence.MIN)));
-        return Utils.join(underOver, value.render(MATH_ML_NODE, options));
+        out.startElement("mrow");
+        out.startElement("munderover");
+        symbol.render(MATH_ML_NODE, out, options);
+        Utils.orEmpty(sub, out, options.setOutsidePrecedence(Precedence.MIN));
+        Utils.orEmpty(sup, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.endElement();
+        value.render(MATH_ML_NODE, out, options);
+        out.endElement();
     }
 }
@@ -1,9 +1,11 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
-import com.github.rccookie.xml.Text;
 
 import static com.github.rccookie.math.rendering.RenderMode.*;
 
@@ -19,11 +21,16 @@ final class BracketLiteral implements RenderableExpression {
     final Bracket type;
     final boolean left;
     final RenderableExpression inner;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     BracketLiteral(Bracket type, boolean left, RenderableExpression inner) {
         this.type = Arguments.checkNull(type, "type");
         this.left = left;
         this.inner = Arguments.checkNull(inner, "inner");
+        hash = Objects.hash(getClass(), this.type, this.left, this.inner);
     }
 
     @Override
@@ -31,6 +38,22 @@ final class BracketLiteral implements RenderableExpression {
         return (left ? "left" : "right")+"("+type+", "+inner+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        BracketLiteral that = (BracketLiteral) o;
+        return hash == that.hash
+                && type == that.type
+                && left == that.left
+                && Structural.equal(inner, that.inner);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.SINGLE_BRACKET;
@@ -38,7 +61,13 @@ final class BracketLiteral implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
-        return (left ? LEFT_SYMBOLS_ASCII : RIGHT_SYMBOLS_ASCII)[type.ordinal()] + inner.render(INLINE, options.setOutsidePrecedence(precedence()));
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        out.append((left ? LEFT_SYMBOLS_ASCII : RIGHT_SYMBOLS_ASCII)[type.ordinal()]);
+        inner.render(INLINE, out, options.setOutsidePrecedence(precedence()));
     }
 
     @Override
@@ -52,19 +81,43 @@ final class BracketLiteral implements RenderableExpression {
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence());
-        if(left)
-            return "\\left" + LEFT_LATEX[type.ordinal()] + inner.render(LATEX, options) + "\\right.";
-        return "\\left." + inner.renderLatex(options) + "\\right" + RIGHT_LATEX[type.ordinal()];
+        if(left) {
+            out.append("\\left").append(LEFT_LATEX[type.ordinal()]);
+            inner.render(LATEX, out, options);
+            out.append("\\right.");
+        }
+        else {
+            out.append("\\left.");
+            inner.renderLatex(out, options);
+            out.append("\\right").append(RIGHT_LATEX[type.ordinal()]);
+        }
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node o = new Node("mo");
-        o.children.add(new Text((left ? LEFT_SYMBOLS_UNICODE : RIGHT_SYMBOLS_UNICODE)[type.ordinal()]));
-        o.attributes.put("fence", "true");
-        o.attributes.put("stretchy", "true");
-        return Utils.join(o, inner.render(MATH_ML_NODE, options.setOutsidePrecedence(precedence())));
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mrow");
+        renderMathMLFence((left ? LEFT_SYMBOLS_UNICODE : RIGHT_SYMBOLS_UNICODE)[type.ordinal()], out);
+        inner.render(MATH_ML_NODE, out, options.setOutsidePrecedence(precedence()));
+        out.endElement();
+    }
+
+    static void renderMathMLFence(String symbol, MathMLWriter out) throws IOException {
+        out.startElement("mo");
+        out.attribute("fence", "true");
+        out.attribute("stretchy", "true");
+        out.text(symbol);
+        out.endElement();
     }
 
     @SuppressWarnings("UnnecessaryUnicodeEscape")
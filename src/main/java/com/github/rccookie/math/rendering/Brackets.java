@@ -1,9 +1,11 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
-import com.github.rccookie.xml.Text;
 
 import static com.github.rccookie.math.rendering.RenderMode.*;
 
@@ -11,10 +13,15 @@ final class Brackets implements RenderableExpression {
 
     final Bracket type;
     final RenderableExpression inner;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Brackets(Bracket type, RenderableExpression inner) {
         this.type = Arguments.checkNull(type, "type");
         this.inner = Arguments.checkNull(inner, "inner");
+        hash = Objects.hash(getClass(), this.type, this.inner);
     }
 
     @Override
@@ -22,6 +29,21 @@ final class Brackets implements RenderableExpression {
         return "brackets("+type+", "+inner+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Brackets that = (Brackets) o;
+        return hash == that.hash
+                && type == that.type
+                && Structural.equal(inner, that.inner);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.BRACKETS;
@@ -29,12 +51,19 @@ final class Brackets implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(Precedence.MIN);
         if(type == Bracket.CEIL)
-            return "ceil("+inner.render(INLINE, options)+")";
-        if(type == Bracket.FLOOR)
-            return "floor("+inner.render(INLINE, options)+")";
-        return BracketLiteral.LEFT_SYMBOLS_ASCII[type.ordinal()] + inner.render(INLINE, options) + BracketLiteral.RIGHT_SYMBOLS_ASCII[type.ordinal()];
+            out.append("ceil(");
+        else if(type == Bracket.FLOOR)
+            out.append("floor(");
+        else out.append(BracketLiteral.LEFT_SYMBOLS_ASCII[type.ordinal()]);
+        inner.render(INLINE, out, options);
+        out.append(type == Bracket.CEIL || type == Bracket.FLOOR ? ")" : BracketLiteral.RIGHT_SYMBOLS_ASCII[type.ordinal()]);
     }
 
     @Override
@@ -42,29 +71,38 @@ final class Brackets implements RenderableExpression {
         AsciiArt inner = this.inner.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MIN));
         AsciiArt left = BracketLiteral.renderBracketUnicode(type, true, inner.height());
         AsciiArt right;
-        if(!options.charset.canDisplay(left.toString())) {
+        if(!options.charset.canDisplay(left)) {
             left = BracketLiteral.renderBracketAscii(type, true, inner.height());
             right = BracketLiteral.renderBracketAscii(type, false, inner.height());
         }
-        else if(!options.charset.canDisplay((right = BracketLiteral.renderBracketUnicode(type, false, inner.height())).toString()))
+        else if(!options.charset.canDisplay((right = BracketLiteral.renderBracketUnicode(type, false, inner.height()))))
             right = BracketLiteral.renderBracketAscii(type, false, inner.height());
-        return left.appendBottom(inner).appendBottom(right);
+        return new AsciiLayout(left).appendBottom(inner).appendBottom(right).toAsciiArt();
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
-        return "\\left" + BracketLiteral.LEFT_LATEX[type.ordinal()] + inner.render(LATEX, options.setOutsidePrecedence(Precedence.MIN)) + "\\right" + BracketLiteral.RIGHT_LATEX[type.ordinal()];
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        out.append("\\left").append(BracketLiteral.LEFT_LATEX[type.ordinal()]);
+        inner.render(LATEX, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.append("\\right").append(BracketLiteral.RIGHT_LATEX[type.ordinal()]);
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node left = new Node("mo"), right = new Node("mo");
-        left.children.add(new Text(BracketLiteral.LEFT_SYMBOLS_UNICODE[type.ordinal()]));
-        right.children.add(new Text(BracketLiteral.RIGHT_SYMBOLS_UNICODE[type.ordinal()]));
-        left.attributes.put("fence", "true");
-        right.attributes.put("fence", "true");
-        left.attributes.put("stretchy", "true");
-        right.attributes.put("stretchy", "true");
-        return Utils.join(left, inner.render(MATH_ML_NODE, options), right);
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mrow");
+        BracketLiteral.renderMathMLFence(BracketLiteral.LEFT_SYMBOLS_UNICODE[type.ordinal()], out);
+        inner.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Precedence.MIN));
+        BracketLiteral.renderMathMLFence(BracketLiteral.RIGHT_SYMBOLS_UNICODE[type.ordinal()], out);
+        out.endElement();
     }
 }
@@ -0,0 +1,210 @@
+package com.github.rccookie.math.rendering;
+
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.IntFunction;
+
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+import com.github.rccookie.xml.Node;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Renders the independent cells of grids and lists. The cells are rendered one after another
+ * at first, while measuring the time taken. Once that time suggests that the remaining cells
+ * take long enough to be worth it, they are split into chunks of about equal cost which are
+ * rendered in parallel. Either way, the results are in the order of the cells.
+ *
+ * <p>Cells are rendered on the fork-join pool of the current thread, if it belongs to one. On
+ * threads of other executors running a {@link BatchRenderer}, the cells are rendered
+ * sequentially, to not compete with other tasks outside the executor. On other threads, the
+ * common fork-join pool is used.</p>
+ */
+final class CellRenderer {
+
+    /**
+     * The minimum estimated time to render the remaining cells, for them to be rendered in
+     * parallel.
+     */
+    static final long PARALLEL_THRESHOLD_NANOS = 500_000;
+    /**
+     * The estimated time to render the cells of a single task.
+     */
+    private static final long CHUNK_NANOS = 100_000;
+
+    /**
+     * Set while running a batch on an executor which is not a fork-join pool.
+     */
+    private static final ThreadLocal<Boolean> SEQUENTIAL = ThreadLocal.withInitial(() -> false);
+
+    private CellRenderer() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Runs the given task, rendering cells sequentially while it runs on this thread.
+     */
+    static void sequential(Runnable task) {
+        boolean outer = SEQUENTIAL.get();
+        SEQUENTIAL.set(true);
+        try {
+            task.run();
+        } finally {
+            SEQUENTIAL.set(outer);
+        }
+    }
+
+    /**
+     * Renders all the given cells using {@link RenderableExpression#render(RenderMode, RenderOptions)}.
+     */
+    static <T> T[] render(RenderableExpression[] cells, RenderMode<T> mode, RenderOptions options, IntFunction<T[]> newArray) {
+        Cells<T> rendered = new Cells<>(cells, mode, options, newArray);
+        T[] results = newArray.apply(cells.length);
+        for(int i=0; i<cells.length; i++) {
+            T cell = rendered.next();
+            results[i] = cell != null ? cell : cells[i].render(mode, options);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the cells rendered to be written into the given writer using {@link #write(Object, MathMLWriter)},
+     * in order, for the cells that are rendered in parallel.
+     */
+    static Cells<?> stream(RenderableExpression[] cells, RenderMode<Node> mode, MathMLWriter out, RenderOptions options) {
+        if(out instanceof MarkupWriter && mode instanceof MathMLRenderMode)
+            return new Cells<>(cells, MarkupWriter.markupMode((MathMLRenderMode) mode), options, String[]::new);
+        return new Cells<>(cells, mode, options, Node[]::new);
+    }
+
+    /**
+     * Returns the cells rendered using {@link RenderableExpression#render(RenderMode, RenderOptions)},
+     * in order, for the cells that are rendered in parallel.
+     */
+    static <T> Cells<T> stream(RenderableExpression[] cells, RenderMode<T> mode, RenderOptions options, IntFunction<T[]> newArray) {
+        return new Cells<>(cells, mode, options, newArray);
+    }
+
+    /**
+     * Writes a cell rendered for the given writer by {@link #stream(RenderableExpression[], RenderMode, MathMLWriter, RenderOptions)}
+     * into it.
+     */
+    static void write(Object cell, MathMLWriter out) throws IOException {
+        if(cell instanceof String)
+            ((MarkupWriter) out).markup((String) cell);
+        else out.node((Node) cell);
+    }
+
+    /**
+     * Returns the pool to render cells in parallel on, or <code>null</code> if they have to
+     * be rendered sequentially.
+     */
+    @Nullable
+    private static ForkJoinPool pool() {
+        ForkJoinPool pool;
+        if(ForkJoinTask.inForkJoinPool())
+            pool = ForkJoinTask.getPool();
+        else if(SEQUENTIAL.get())
+            return null;
+        else pool = ForkJoinPool.commonPool();
+        return pool.getParallelism() > 1 ? pool : null;
+    }
+
+
+    /**
+     * The cells of a grid or list, which are either rendered by the caller one after another,
+     * or rendered in parallel in advance.
+     */
+    static final class Cells<T> {
+
+        private final RenderableExpression[] cells;
+        private final RenderMode<T> mode;
+        private final RenderOptions options;
+        private final IntFunction<T[]> newArray;
+        @Nullable
+        private final ForkJoinPool pool;
+        private int next = 0;
+        private long start;
+        /**
+         * The cells rendered in advance, starting at {@link #from}, or <code>null</code> if
+         * not rendering in parallel.
+         */
+        private T[] results = null;
+        private int from;
+
+        private Cells(RenderableExpression[] cells, RenderMode<T> mode, RenderOptions options, IntFunction<T[]> newArray) {
+            this.cells = cells;
+            this.mode = mode;
+            this.options = options;
+            this.newArray = newArray;
+            pool = cells.length > 2 ? pool() : null;
+        }
+
+        /**
+         * Returns the next cell, if rendered in advance, or <code>null</code> if it has to be
+         * rendered by the caller, before this is called again. The time until then is taken
+         * to estimate the cost of the remaining cells.
+         */
+        @Nullable
+        T next() {
+            int index = next++;
+            if(results != null)
+                return results[index - from];
+            if(pool == null)
+                return null;
+            if(index == 0) {
+                start = System.nanoTime();
+                return null;
+            }
+            int remaining = cells.length - index;
+            if(remaining < 2)
+                return null;
+            long perCell = (System.nanoTime() - start) / index;
+            if(perCell * remaining < PARALLEL_THRESHOLD_NANOS)
+                return null;
+
+            from = index;
+            results = newArray.apply(remaining);
+            int chunk = (int) Math.max(1, Math.min(remaining, CHUNK_NANOS / Math.max(1, perCell)));
+            pool.invoke(new Task<>(cells, mode, options, results, from, Renderer.origin(), from, cells.length, chunk));
+            return results[0];
+        }
+    }
+
+    private static final class Task<T> extends RecursiveAction {
+
+        private final RenderableExpression[] cells;
+        private final RenderMode<T> mode;
+        private final RenderOptions options;
+        private final T[] results;
+        private final int offset;
+        private final Renderer.Origin origin;
+        private final int from, to;
+        private final int chunk;
+
+        Task(RenderableExpression[] cells, RenderMode<T> mode, RenderOptions options, T[] results, int offset, Renderer.Origin origin, int from, int to, int chunk) {
+            this.cells = cells;
+            this.mode = mode;
+            this.options = options;
+            this.results = results;
+            this.offset = offset;
+            this.origin = origin;
+            this.from = from;
+            this.to = to;
+            this.chunk = chunk;
+        }
+
+        @Override
+        protected void compute() {
+            if(to - from > chunk) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Task<>(cells, mode, options, results, offset, origin, from, mid, chunk),
+                          new Task<>(cells, mode, options, results, offset, origin, mid, to, chunk));
+            }
+            else Renderer.detached(origin, () -> {
+                for(int i=from; i<to; i++)
+                    results[i - offset] = cells[i].render(mode, options);
+            });
+        }
+    }
+}
@@ -3,42 +3,104 @@ package com.github.rccookie.math.rendering;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetEncoder;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
-import java.util.Set;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.function.IntPredicate;
+import java.util.function.LongBinaryOperator;
 
+import com.github.rccookie.util.Arguments;
+
+/**
+ * A set of characters which can be displayed, used to decide which representation of an
+ * expression can be used. Character sets are immutable and thread-safe: the characters
+ * supported by a charset are determined lazily without locking, thus a character set can
+ * be shared by any number of concurrent renderings.
+ */
 public final class CharacterSet {
 
+    /**
+     * Number of code points per plane.
+     */
+    private static final int PLANE_SIZE = 1 << 16;
+    private static final int PLANE_COUNT = (Character.MAX_CODE_POINT + 1) / PLANE_SIZE;
+    /**
+     * Shared bitmaps for planes in which none / all code points can be displayed.
+     */
+    private static final long[] EMPTY_PLANE = new long[PLANE_SIZE / 64];
+    private static final long[] FULL_PLANE = new long[PLANE_SIZE / 64];
+    static {
+        Arrays.fill(FULL_PLANE, -1L);
+    }
+    private static final LongBinaryOperator OR = (a, b) -> a | b;
+
     public static final CharacterSet ASCII = new CharacterSet(StandardCharsets.US_ASCII);
     public static final CharacterSet UNICODE = new CharacterSet(StandardCharsets.UTF_8);
     public static final CharacterSet ISO_8859_1 = new CharacterSet(StandardCharsets.ISO_8859_1);
-    private static final Set<Integer> MOD_UNICODE_EXCLUDE = Set.of((int) '\u2254', (int) '\u2255', (int) '\u21D4', (int) '\u2194', (int) '\u21D2', (int) '\u2192', (int) '\u21D0', (int) '\u2190');
-    public static final CharacterSet MOD_UNICODE = new CharacterSet(UNICODE, c -> !MOD_UNICODE_EXCLUDE.contains(c));
+    public static final CharacterSet MOD_UNICODE = UNICODE.without('\u2254', '\u2255', '\u21D4', '\u2194', '\u21D2', '\u2192', '\u21D0', '\u2190');
 
     private final IntPredicate filter;
-    private final Map<Integer, Boolean> cache = new HashMap<>();
+    /**
+     * Precomputed bitmaps per plane, one bit per code point. A <code>null</code> plane has
+     * not been precomputed and is evaluated lazily using {@link #lazy}.
+     */
+    private final long[][] planes;
+    /**
+     * Lazily filled bitmaps for planes that have not been precomputed. Every plane consists
+     * of pairs of words, the first containing the results and the second the flags whether
+     * the respective result is already known. A result bit is always set before its known
+     * bit, so no locking is required.
+     */
+    private final AtomicReferenceArray<AtomicLongArray> lazy;
+    /**
+     * Mask of the {@link AsciiArt.CodePoints#block(int) blocks} that are known to be
+     * displayable completely.
+     */
+    private final long displayableBlocks;
 
     public CharacterSet(IntPredicate filter) {
-        this.filter = filter;
+        this(Arguments.checkNull(filter, "filter"), new long[PLANE_COUNT][]);
     }
 
     public CharacterSet(Charset charset) {
-        this(new IntPredicate() {
-            final CharsetEncoder encoder = charset.newEncoder();
-            @Override
-            public boolean test(int value) {
-                return encoder.canEncode(new String(new int[] { value }, 0, 1));
-            }
-        });
+        this(encodable(charset), charsetPlanes(charset));
     }
 
     public CharacterSet(CharacterSet base, IntPredicate filter) {
         this(c -> base.canDisplay(c) && filter.test(c));
     }
 
+    private CharacterSet(IntPredicate filter, long[][] planes) {
+        this.filter = filter;
+        this.planes = planes;
+        AtomicReferenceArray<AtomicLongArray> lazy = null;
+        for(long[] plane : planes) if(plane == null) {
+            lazy = new AtomicReferenceArray<>(PLANE_COUNT);
+            break;
+        }
+        this.lazy = lazy;
+        displayableBlocks = displayableBlocks(planes[0]);
+    }
+
     public boolean canDisplay(int character) {
-        return cache.computeIfAbsent(character, filter::test);
+        if(character < 0 || character > Character.MAX_CODE_POINT)
+            return filter.test(character);
+        long[] plane = planes[character >>> 16];
+        if(plane != null)
+            return (plane[(character & 0xFFFF) >>> 6] & (1L << character)) != 0;
+
+        AtomicLongArray bits = lazy.get(character >>> 16);
+        if(bits == null && !lazy.compareAndSet(character >>> 16, null, bits = new AtomicLongArray(PLANE_SIZE / 32)))
+            bits = lazy.get(character >>> 16);
+        int index = ((character & 0xFFFF) >>> 6) << 1;
+        long mask = 1L << character;
+        if((bits.get(index + 1) & mask) != 0)
+            return (bits.get(index) & mask) != 0;
+
+        boolean result = filter.test(character);
+        if(result) bits.accumulateAndGet(index, mask, OR);
+        bits.accumulateAndGet(index + 1, mask, OR);
+        return result;
     }
 
     public boolean canDisplay(String str) {
@@ -49,7 +111,22 @@ public final class CharacterSet {
     }
 
     public boolean canDisplay(AsciiArt a) {
-        return canDisplay(a.toString());
+        AsciiArt.CodePoints codePoints = a.codePoints;
+        if((codePoints.blocks & ~displayableBlocks) == 0)
+            return true;
+        if(codePoints.distinct != null && canDisplayAll(codePoints.distinct))
+            return true;
+        // Summary may over-approximate the content, check exactly
+        for(int i=0; i<a.height(); i++)
+            if((i != 0 && !canDisplay('\n')) || !canDisplay(a.getLine(i)))
+                return false;
+        return true;
+    }
+
+    private boolean canDisplayAll(int[] characters) {
+        for(int c : characters)
+            if(!canDisplay(c)) return false;
+        return true;
     }
 
     public char orFallback(char maybe, char fallback) {
@@ -68,9 +145,76 @@ public final class CharacterSet {
         return canDisplay(maybe) ? maybe : fallback;
     }
 
+    /**
+     * Returns a character set containing all characters of this character set except the
+     * given ones. Precomputed planes stay precomputed.
+     */
+    private CharacterSet without(int... characters) {
+        long[][] planes = this.planes.clone();
+        for(int c : characters) {
+            int p = c >>> 16;
+            if(planes[p] == null) continue;
+            if(planes[p] == this.planes[p]) planes[p] = planes[p].clone();
+            planes[p][(c & 0xFFFF) >>> 6] &= ~(1L << c);
+        }
+        int[] excluded = characters.clone();
+        Arrays.sort(excluded);
+        return new CharacterSet(c -> canDisplay(c) && Arrays.binarySearch(excluded, c) < 0, planes);
+    }
+
 
 
     public static CharacterSet intersection(CharacterSet a, CharacterSet b) {
         return new CharacterSet(c -> a.canDisplay(c) && b.canDisplay(c));
     }
+
+    /**
+     * Returns the mask of the blocks which are completely displayable according to the
+     * given bitmap of the basic multilingual plane.
+     */
+    private static long displayableBlocks(long[] bmp) {
+        if(bmp == null) return 0;
+        long blocks = 0;
+        for(int block=0; block<63; block++) {
+            int from = block == 0 ? 0 : Math.max(128, (block - 1) << 8) >>> 6;
+            int to = block == 0 ? 2 : block << 2;
+            if(to > bmp.length) break;
+            boolean all = true;
+            for(int i=from; i<to && all; i++)
+                all = bmp[i] == -1L;
+            if(all) blocks |= 1L << block;
+        }
+        return blocks;
+    }
+
+    /**
+     * Returns a thread-safe predicate testing whether the given code point can be encoded
+     * using the given charset.
+     */
+    private static IntPredicate encodable(Charset charset) {
+        Arguments.checkNull(charset, "charset");
+        ThreadLocal<CharsetEncoder> encoder = ThreadLocal.withInitial(charset::newEncoder);
+        return c -> encoder.get().canEncode(new String(new int[] { c }, 0, 1));
+    }
+
+    /**
+     * Precomputes the basic multilingual plane for the given charset. The supplementary
+     * planes are fully displayable for charsets which can encode all of unicode, empty for
+     * single byte charsets, and otherwise left to be evaluated lazily.
+     */
+    private static long[][] charsetPlanes(Charset charset) {
+        CharsetEncoder encoder = charset.newEncoder();
+        long[] bmp = new long[PLANE_SIZE / 64];
+        for(int c=0; c<PLANE_SIZE; c++)
+            if(encoder.canEncode((char) c))
+                bmp[c >>> 6] |= 1L << c;
+
+        long[][] planes = new long[PLANE_COUNT][];
+        planes[0] = bmp;
+        if(charset.contains(StandardCharsets.UTF_8))
+            Arrays.fill(planes, 1, PLANE_COUNT, FULL_PLANE);
+        else if(encoder.maxBytesPerChar() <= 1)
+            Arrays.fill(planes, 1, PLANE_COUNT, EMPTY_PLANE);
+        return planes;
+    }
 }
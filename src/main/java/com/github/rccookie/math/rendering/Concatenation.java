@@ -1,5 +1,7 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
 import java.util.Set;
 
 import com.github.rccookie.math.Precedence;
@@ -13,11 +15,16 @@ final class Concatenation implements RenderableExpression {
     final RenderableExpression a;
     final RenderableExpression b;
     final boolean maybeSpace;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Concatenation(RenderableExpression a, RenderableExpression b, boolean maybeSpace) {
         this.a = Arguments.checkNull(a, "a");
         this.b = Arguments.checkNull(b, "b");
         this.maybeSpace = maybeSpace;
+        hash = Objects.hash(getClass(), this.a, this.b, this.maybeSpace);
     }
 
     @Override
@@ -30,34 +37,72 @@ final class Concatenation implements RenderableExpression {
         return (maybeSpace ? "implicit" : "concat") + "("+a+", "+b+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Concatenation that = (Concatenation) o;
+        return hash == that.hash
+                && Structural.equal(a, that.a)
+                && Structural.equal(b, that.b)
+                && maybeSpace == that.maybeSpace;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String renderInline(RenderOptions options) {
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence());
-        return a.render(INLINE, options) + (renderSpace(options) ? " " : "") + b.render(INLINE, options);
+        a.render(INLINE, out, options);
+        if(renderSpace(options)) out.append(" ");
+        b.render(INLINE, out, options);
     }
 
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         options = options.setOutsidePrecedence(precedence());
         if(renderSpace(options))
-            return a.render(ASCII_ART, options).appendTop(new AsciiArt(" ")).appendCenter(b.render(ASCII_ART, options));
+            return new AsciiLayout(a.render(ASCII_ART, options)).appendTop(new AsciiArt(" ")).appendCenter(b.render(ASCII_ART, options)).toAsciiArt();
         return a.render(ASCII_ART, options).appendCenter(b.render(ASCII_ART, options));
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence());
-        if(renderSpace(options))
-            return a.render(LATEX, options) + " \\; " + b.render(LATEX, options);
-        return a.render(LATEX, options) + " " + b.render(LATEX, options); // Math mode, spaces are ignored
+        a.render(LATEX, out, options);
+        out.append(renderSpace(options) ? " \\; " : " "); // Math mode, spaces are ignored
+        b.render(LATEX, out, options);
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence());
-        if(renderSpace(options))
-            return Utils.join(a.render(MATH_ML_NODE, options), new Node("mspace"), b.render(MATH_ML_NODE, options));
-        return Utils.join(a.render(MATH_ML_NODE, options), b.render(MATH_ML_NODE, options));
+        out.startElement("mrow");
+        a.render(MATH_ML_NODE, out, options);
+        if(renderSpace(options)) {
+            out.startElement("mspace");
+            out.endElement();
+        }
+        b.render(MATH_ML_NODE, out, options);
+        out.endElement();
     }
 
     private static final Set<Class<? extends RenderableExpression>> NO_SPACE_TYPES = Set.of(
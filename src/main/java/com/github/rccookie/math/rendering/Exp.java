@@ -1,5 +1,8 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
@@ -9,9 +12,28 @@ import static com.github.rccookie.math.rendering.RenderMode.*;
 final class Exp implements RenderableExpression {
 
     final RenderableExpression value;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Exp(RenderableExpression value) {
         this.value = Arguments.checkNull(value, "value");
+        hash = Objects.hash(getClass(), this.value);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Exp that = (Exp) o;
+        return hash == that.hash
+                && Structural.equal(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
     @Override
@@ -24,6 +46,11 @@ final class Exp implements RenderableExpression {
         return asCall().render(INLINE, options);
     }
 
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        asCall().render(INLINE, out, options);
+    }
+
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         return asPower().render(ASCII_ART, options);
@@ -34,15 +61,37 @@ final class Exp implements RenderableExpression {
         return asPower().render(LATEX, options);
     }
 
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        asPower().render(LATEX, out, options);
+    }
+
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return asPower().render(MATH_ML_NODE, options);
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        asPower().render(MATH_ML_NODE, out, options);
     }
 
     @Override
     public <T> T render(RenderMode<T> mode, RenderOptions options) {
-        return mode.render(this, options);
+        T result = Renderer.lookup(this, mode, options);
+        return result != null ? result : Renderer.store(this, mode, options, mode.render(this, options));
     }
+    @Override
+    public void render(RenderMode<String> mode, Appendable out, RenderOptions options) throws IOException {
+        out.append(render(mode, options));
+    }
+    @Override
+    public void render(RenderMode<Node> mode, MathMLWriter out, RenderOptions options) throws IOException {
+        if(options.cache != null || !(mode instanceof MathMLRenderMode))
+            Renderer.renderCompletely(this, mode, out, options);
+        else ((MathMLRenderMode) mode).render(this, out, options);
+    }
+
 
     private RenderableExpression asCall() {
         return RenderableExpression.call("exp", value);
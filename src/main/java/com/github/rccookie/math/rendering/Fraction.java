@@ -1,7 +1,9 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
-import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -11,10 +13,15 @@ final class Fraction implements RenderableExpression {
 
     final RenderableExpression a;
     final RenderableExpression b;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Fraction(RenderableExpression a, RenderableExpression b) {
         this.a = Arguments.checkNull(a, "a");
         this.b = Arguments.checkNull(b, "b");
+        hash = Objects.hash(getClass(), this.a, this.b);
     }
 
     @Override
@@ -22,6 +29,21 @@ final class Fraction implements RenderableExpression {
         return "frac("+a+", "+b+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Fraction that = (Fraction) o;
+        return hash == that.hash
+                && Structural.equal(a, that.a)
+                && Structural.equal(b, that.b);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.FRACTION;
@@ -29,7 +51,14 @@ final class Fraction implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
-        return a.render(INLINE, options.setOutsidePrecedence(Precedence.DIVIDE))+"/"+b.render(INLINE, options.setOutsidePrecedence(Precedence.DIVIDE+1));
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        a.render(INLINE, out, options.setOutsidePrecedence(Precedence.DIVIDE));
+        out.append("/");
+        b.render(INLINE, out, options.setOutsidePrecedence(Precedence.DIVIDE+1));
     }
 
     @Override
@@ -38,12 +67,17 @@ final class Fraction implements RenderableExpression {
         AsciiArt b = this.b.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MIN));
 
         if(shouldRenderInline(a, b, options))
-            return a.appendCenter(new AsciiArt("/")).appendCenter(b);
+            return new AsciiLayout(a).appendCenter(new AsciiArt("/")).appendCenter(b).toAsciiArt();
 
-        AsciiArt bar = new AsciiArt("-".repeat(Math.max(a.width(), b.width()) + (a.height() + b.height() > 2 ? 2 : 0)));
-        int aPos = (bar.width() - a.width() + 1) / 2;
-        int bPos = (bar.width() - b.width() + 1) / 2;
-        return bar.draw(b, new int2(bPos, 1)).draw(a, new int2(aPos, -a.height()));
+        int barWidth = Math.max(a.width(), b.width()) + (a.height() + b.height() > 2 ? 2 : 0);
+        int aPos = (barWidth - a.width() + 1) / 2;
+        int bPos = (barWidth - b.width() + 1) / 2;
+        return new AsciiLayout()
+                .draw(a, aPos, 0)
+                .fill('-', 0, a.height(), barWidth)
+                .draw(b, bPos, a.height() + 1)
+                .setCenter(a.height())
+                .toAsciiArt();
     }
 
     private static boolean shouldRenderInline(AsciiArt a, AsciiArt b, RenderOptions options) {
@@ -54,16 +88,30 @@ final class Fraction implements RenderableExpression {
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(Precedence.MIN);
-        return "\\frac{"+a.render(LATEX, options)+"}{"+b.render(LATEX, options)+"}";
+        out.append("\\frac{");
+        a.render(LATEX, out, options);
+        out.append("}{");
+        b.render(LATEX, out, options);
+        out.append("}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(Precedence.MIN);
-        Node frac = new Node("mfrac");
-        frac.children.add(a.renderMathMLNode(options));
-        frac.children.add(b.renderMathMLNode(options));
-        return frac;
+        out.startElement("mfrac");
+        a.render(MATH_ML_NODE, out, options);
+        b.render(MATH_ML_NODE, out, options);
+        out.endElement();
     }
 }
@@ -1,9 +1,11 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Objects;
+import java.util.stream.IntStream;
 
 import com.github.rccookie.math.Precedence;
-import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -12,6 +14,10 @@ import static com.github.rccookie.math.rendering.RenderMode.*;
 final class Grid implements RenderableExpression {
 
     final RenderableExpression[][] elements;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Grid(RenderableExpression[][] elements) {
         if(elements.length == 0 || elements[0].length == 0)
@@ -22,6 +28,46 @@ final class Grid implements RenderableExpression {
                 throw new IllegalArgumentException("Rows must be of the same size");
             this.elements[i] = Arguments.checkNull(elements[i], "elements[" + i + "]").clone();
         }
+        hash = Objects.hash(getClass(), Arrays.deepHashCode(this.elements));
+    }
+
+    /**
+     * Creates an m x n grid showing only the first and last <code>visible</code> rows and
+     * columns, with a row and column of dots in place of the others. Only the cells shown
+     * are requested from the supplier.
+     */
+    static Grid elided(int m, int n, int visible, CellSupplier cells) {
+        Arguments.checkRange(visible, 1, null);
+        Arguments.checkNull(cells, "cells");
+        int[] rows = window(Arguments.checkRange(m, 1, null), visible);
+        int[] columns = window(Arguments.checkRange(n, 1, null), visible);
+
+        RenderableExpression[][] elements = new RenderableExpression[rows.length][columns.length];
+        for(int i=0; i<rows.length; i++) for(int j=0; j<columns.length; j++) {
+            if(rows[i] < 0)
+                elements[i][j] = columns[j] < 0 ? SpecialLiteral.DDOTS : SpecialLiteral.VDOTS;
+            else if(columns[j] < 0)
+                elements[i][j] = SpecialLiteral.CDOTS;
+            else elements[i][j] = Arguments.checkNull(cells.get(rows[i], columns[j]), "cells.get("+rows[i]+", "+columns[j]+")");
+        }
+        return new Grid(elements);
+    }
+
+    /**
+     * Returns the indices to show out of the given number of rows or columns, with -1 in
+     * place of the elided ones. Eliding a single row or column would not save any space,
+     * so that is never done.
+     */
+    private static int[] window(int size, int visible) {
+        if(size <= 2 * visible + 1)
+            return IntStream.range(0, size).toArray();
+        int[] indices = new int[2 * visible + 1];
+        for(int i=0; i<visible; i++) {
+            indices[i] = i;
+            indices[visible + 1 + i] = size - visible + i;
+        }
+        indices[visible] = -1;
+        return indices;
     }
 
     @Override
@@ -29,6 +75,20 @@ final class Grid implements RenderableExpression {
         return "grid("+ Arrays.deepToString(elements)+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Grid that = (Grid) o;
+        return hash == that.hash
+                && Structural.equal(elements, that.elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         if(elements.length == 1 && elements[0].length == 1)
@@ -38,72 +98,104 @@ final class Grid implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        options.budget.checkOutputSize(cellCount());
         options = options.setOutsidePrecedence(Precedence.MIN);
 
         String comma = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? "," : ", ";
         String space = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? " " : "  ";
-        StringBuilder str = new StringBuilder();
         for(int i=0; i<elements.length; i++) {
-            if(i != 0) str.append(comma);
+            if(i != 0) out.append(comma);
             for(int j=0; j<elements[i].length; j++) {
-                if(j != 0) str.append(space);
-                str.append(elements[i][j].render(INLINE, options));
+                if(j != 0) out.append(space);
+                elements[i][j].render(INLINE, out, options);
             }
         }
-        return str.toString();
     }
 
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
+        options.budget.checkOutputSize(cellCount());
         options = options.setOutsidePrecedence(Precedence.MIN);
 
-        AsciiArt[][] elements = new AsciiArt[this.elements.length][this.elements[0].length];
-        int[] widths = new int[elements[0].length], heights = new int[elements.length];
-        for(int i=0; i<elements.length; i++) for(int j=0; j<elements[i].length; j++) {
-            elements[i][j] = this.elements[i][j].render(ASCII_ART, options);
-            widths[j] = Math.max(widths[j], elements[i][j].width());
-            heights[i] = Math.max(heights[i], elements[i][j].height());
-        }
-
-        int spaces = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? 1 : 2;
-
-        AsciiArt art = new AsciiArt("");
-        for(int i=0, yOff=0; i<elements.length; yOff+=heights[i], i++) {
-            for(int j=0, xOff=0; j<elements[i].length; xOff+=widths[j]+spaces, j++) {
-                art = art.draw(elements[i][j], new int2(xOff + (widths[j]-elements[i][j].width()+1)/2, yOff + (heights[i]-elements[i][j].height()+1)/2));
-            }
-        }
-        return art.recalculateCenter();
+        AsciiArt[] cells = CellRenderer.render(cells(), ASCII_ART, options, AsciiArt[]::new);
+        int columns = elements[0].length;
+        AsciiGrid grid = new AsciiGrid(elements.length, columns, options.spaceMode == RenderOptions.SpaceMode.COMPACT ? 1 : 2);
+        for(int i=0; i<cells.length; i++)
+            grid.set(i / columns, i % columns, cells[i]);
+        return grid.toAsciiArt();
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        options.budget.checkOutputSize(cellCount());
         options = options.setOutsidePrecedence(Precedence.MIN);
-        StringBuilder str = new StringBuilder("\\begin{matrix}");
+        CellRenderer.Cells<String> cells = CellRenderer.stream(cells(), LATEX, options, String[]::new);
+        out.append("\\begin{matrix}");
         for(int i=0; i<elements.length; i++) {
             for(int j=0; j<elements[i].length; j++) {
-                if(j != 0) str.append("&");
-                str.append(elements[i][j].render(LATEX, options));
+                if(j != 0) out.append("&");
+                String cell = cells.next();
+                if(cell != null)
+                    out.append(cell);
+                else elements[i][j].render(LATEX, out, options);
             }
             if(i != elements.length-1)
-                str.append("\\\\");
+                out.append("\\\\");
         }
-        return str.append("\\end{matrix}").toString();
+        out.append("\\end{matrix}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        options.budget.checkOutputSize(cellCount());
         options = options.setOutsidePrecedence(Precedence.MIN);
-        Node table = new Node("mtable");
-        for(RenderableExpression[] row : elements) {
-            Node tr = new Node("mtr");
-            for(RenderableExpression e : row) {
-                Node td = new Node("mtd");
-                td.children.add(e.render(MATH_ML_NODE, options));
-                tr.children.add(td);
+        CellRenderer.Cells<?> cells = CellRenderer.stream(cells(), MATH_ML_NODE, out, options);
+        out.startElement("mtable");
+        for(int i=0; i<elements.length; i++) {
+            out.startElement("mtr");
+            for(int j=0; j<elements[i].length; j++) {
+                out.startElement("mtd");
+                Object cell = cells.next();
+                if(cell != null)
+                    CellRenderer.write(cell, out);
+                else elements[i][j].render(MATH_ML_NODE, out, options);
+                out.endElement();
             }
-            table.children.add(tr);
+            out.endElement();
         }
-        return table;
+        out.endElement();
+    }
+
+    /**
+     * Returns the number of cells, which is a lower bound for the output size in each render
+     * mode, as checked against the {@link RenderBudget} before rendering any cell.
+     */
+    int cellCount() {
+        return elements.length * elements[0].length;
+    }
+
+    /**
+     * Returns all elements, row by row.
+     */
+    private RenderableExpression[] cells() {
+        RenderableExpression[] cells = new RenderableExpression[cellCount()];
+        for(int i=0; i<elements.length; i++)
+            System.arraycopy(elements[i], 0, cells, i * elements[i].length, elements[i].length);
+        return cells;
     }
 }
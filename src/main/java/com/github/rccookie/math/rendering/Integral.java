@@ -1,10 +1,11 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
-import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
-import com.github.rccookie.xml.Text;
 
 import org.jetbrains.annotations.Nullable;
 
@@ -17,11 +18,16 @@ final class Integral implements RenderableExpression {
     @Nullable
     final RenderableExpression b;
     final RenderableExpression value;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Integral(@Nullable RenderableExpression a, @Nullable RenderableExpression b, RenderableExpression value) {
         this.a = a;
         this.b = b;
         this.value = Arguments.checkNull(value, "value");
+        hash = Objects.hash(getClass(), this.a, this.b, this.value);
     }
 
     @Override
@@ -29,6 +35,22 @@ final class Integral implements RenderableExpression {
         return "int("+a+", "+b+", "+value+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Integral that = (Integral) o;
+        return hash == that.hash
+                && Structural.equal(a, that.a)
+                && Structural.equal(b, that.b)
+                && Structural.equal(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.ITERATION;
@@ -39,6 +61,11 @@ final class Integral implements RenderableExpression {
         return new BigSymbol(RenderableExpression.num("\u222B"), a, b, value).render(INLINE, options);
     }
 
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        new BigSymbol(RenderableExpression.num("\u222B"), a, b, value).render(INLINE, out, options);
+    }
+
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         AsciiArt value = this.value.renderAsciiArt(options);
@@ -47,16 +74,16 @@ final class Integral implements RenderableExpression {
             symbol = createSymbol(value.height(), 1, "\u222B", "\u2320", "\u23AE", "\u2321", options);
         else symbol = createSymbol(value.height(), 3, null, "/", "|", "/", options);
 
-        AsciiArt art = symbol;
+        AsciiLayout art = new AsciiLayout(symbol);
         if(this.a != null) {
             AsciiArt a = this.a.renderAsciiArt(options);
-            art = art.draw(a, new int2(-(a.width()-1) / 2, art.height()));
+            art.draw(a, -(a.width()-1) / 2, art.height());
         }
         if(this.b != null) {
             AsciiArt b = this.b.renderAsciiArt(options);
-            art = art.draw(b, new int2(-b.width()/2, -b.height()));
+            art.draw(b, -b.width()/2, -b.height());
         }
-        return art.appendCenter(value);
+        return art.appendCenter(value).toAsciiArt();
     }
 
     private static AsciiArt createSymbol(int height, int minHeight, String inline, String top, String middle, String bottom, RenderOptions options) {
@@ -71,21 +98,40 @@ final class Integral implements RenderableExpression {
         return new BigSymbol(RenderableExpression.num("\u222B"), a, b, value).render(LATEX, options);
     }
 
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        new BigSymbol(RenderableExpression.num("\u222B"), a, b, value).render(LATEX, out, options);
+    }
+
     @Override
     public <T> T render(RenderMode<T> mode, RenderOptions options) {
-        if(mode == INLINE || mode == LATEX)
-            return mode.render(this, options);
-        return RenderableExpression.super.render(mode, options);
+        if(mode != INLINE && mode != LATEX)
+            return RenderableExpression.super.render(mode, options);
+        T result = Renderer.lookup(this, mode, options);
+        return result != null ? result : Renderer.store(this, mode, options, mode.render(this, options));
+    }
+    @Override
+    public void render(RenderMode<String> mode, Appendable out, RenderOptions options) throws IOException {
+        out.append(render(mode, options));
     }
 
+
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node symbol = new Node("mo");
-        Node underOver = new Node("munderover");
-        symbol.children.add(new Text("\u222B"));
-        underOver.children.add(symbol);
-        underOver.children.add(Utils.orEmpty(a, options.setOutsidePrecedence(Precedence.MIN)));
-        underOver.children.add(Utils.orEmpty(b, options.setOutsidePrecedence(Precedence.MIN)));
-        return Utils.join(underOver, value.render(MATH_ML_NODE, options.setOutsidePrecedence(precedence())));
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mrow");
+        out.startElement("munderover");
+        out.startElement("mo");
+        out.text("\u222B");
+        out.endElement();
+        Utils.orEmpty(a, out, options.setOutsidePrecedence(Precedence.MIN));
+        Utils.orEmpty(b, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.endElement();
+        value.render(MATH_ML_NODE, out, options.setOutsidePrecedence(precedence()));
+        out.endElement();
     }
 }
@@ -0,0 +1,90 @@
+package com.github.rccookie.math.rendering;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonicalizes structurally equal expressions created by the static builder methods of
+ * {@link RenderableExpression}, if enabled. Canonical instances are only weakly referenced
+ * and can be garbage collected once they are no longer used. The canonical instances are
+ * kept in a concurrent map, so expressions can be created by multiple threads without
+ * waiting for each other.
+ */
+final class Interner {
+
+    private Interner() { throw new UnsupportedOperationException(); }
+
+    private static volatile boolean enabled = false;
+    private static final Map<Canonical, Canonical> CANONICAL = new ConcurrentHashMap<>();
+    private static final ReferenceQueue<RenderableExpression> COLLECTED = new ReferenceQueue<>();
+
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    static void setEnabled(boolean enabled) {
+        Interner.enabled = enabled;
+        if(!enabled)
+            CANONICAL.clear();
+    }
+
+    /**
+     * Returns the canonical instance structurally equal to the given expression, if
+     * interning is enabled, otherwise the expression itself.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends RenderableExpression> T intern(T expression) {
+        if(!enabled) return expression;
+        expungeCollected();
+        Canonical candidate = new Canonical(expression);
+        while(true) {
+            Canonical existing = CANONICAL.putIfAbsent(candidate, candidate);
+            if(existing == null) return expression;
+            RenderableExpression canonical = existing.get();
+            if(canonical != null) return (T) canonical;
+            CANONICAL.remove(existing);
+        }
+    }
+
+    private static void expungeCollected() {
+        Reference<? extends RenderableExpression> collected;
+        while((collected = COLLECTED.poll()) != null)
+            CANONICAL.remove(collected);
+    }
+
+
+    /**
+     * A weakly referenced canonical instance, equal to the canonical instances structurally
+     * equal to it. Once collected, it is only equal to itself.
+     */
+    private static final class Canonical extends WeakReference<RenderableExpression> {
+
+        /**
+         * The hash code of the expression, which remains after it has been collected.
+         */
+        private final int hash;
+
+        Canonical(RenderableExpression expression) {
+            super(expression, COLLECTED);
+            hash = expression.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Canonical)) return false;
+            Canonical that = (Canonical) o;
+            if(hash != that.hash) return false;
+            RenderableExpression expression = get();
+            return expression != null && expression.equals(that.get());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
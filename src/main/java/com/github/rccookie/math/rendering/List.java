@@ -1,6 +1,8 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
 import java.util.Arrays;
+import java.util.Objects;
 
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
@@ -13,10 +15,15 @@ final class List implements RenderableExpression {
 
     final RenderableExpression delimiter;
     final RenderableExpression[] elements;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     List(RenderableExpression delimiter, RenderableExpression[] elements) {
         this.delimiter = Arguments.checkNull(delimiter, "delimiter");
         this.elements = Arguments.deepCheckNull(elements, "elements");
+        hash = Objects.hash(getClass(), this.delimiter, Arrays.hashCode(this.elements));
     }
 
     @Override
@@ -24,6 +31,21 @@ final class List implements RenderableExpression {
         return "list('"+delimiter+"', "+ Arrays.toString(elements)+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        List that = (List) o;
+        return hash == that.hash
+                && Structural.equal(delimiter, that.delimiter)
+                && Structural.equal(elements, that.elements);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         if(elements.length == 0)
@@ -35,7 +57,12 @@ final class List implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
-        return renderString(INLINE, options);
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        renderString(INLINE, out, options);
     }
 
     @Override
@@ -44,51 +71,62 @@ final class List implements RenderableExpression {
         if(this.elements.length == 1) return elements[0].render(ASCII_ART, options);
 
         AsciiArt delimiter = this.delimiter.render(ASCII_ART, options);
-        AsciiArt[] elements = Arrays.stream(this.elements).map(e -> e.render(ASCII_ART, options.setOutsidePrecedence(precedence() + 1))).toArray(AsciiArt[]::new);
+        AsciiArt[] elements = CellRenderer.render(this.elements, ASCII_ART, options.setOutsidePrecedence(precedence() + 1), AsciiArt[]::new);
         if(!Utils.hasPadding(delimiter.toString()) && (options.spaceMode == RenderOptions.SpaceMode.FORCE ||
                 (options.spaceMode == RenderOptions.SpaceMode.AUTO && Arrays.stream(elements).anyMatch(e -> e.size().area() != 1))))
             delimiter = delimiter.appendCenter(new AsciiArt(" "));
 
-        AsciiArt art = elements[0];
+        AsciiLayout art = new AsciiLayout(elements[0]);
         for(int i=1; i<elements.length; i++)
-            art = art.appendCenter(delimiter).appendCenter(elements[i]);
-        return art;
+            art.appendCenter(delimiter).appendCenter(elements[i]);
+        return art.toAsciiArt();
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
-        return renderString(LATEX, options);
+        return LATEX.render(this, options);
     }
 
     @Override
-    public Node renderMathMLNode(RenderOptions options) {
-        Node list = new Node("mrow");
-        if(elements.length == 0) return list;
-
-        Node delimiter = this.delimiter.render(MATH_ML_NODE, options);
-        if(elements.length != 1)
-            options = options.setOutsidePrecedence(precedence() + 1);
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        renderString(LATEX, out, options);
+    }
 
-        list.children.add(elements[0].render(MATH_ML_NODE, options));
-        if(elements.length == 1) return list;
+    @Override
+    public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
 
-        for(int i=1; i<elements.length; i++) {
-            list.children.add(delimiter.clone());
-            list.children.add(elements[i].render(MATH_ML_NODE, options));
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mrow");
+        if(elements.length == 1)
+            elements[0].render(MATH_ML_NODE, out, options);
+        else if(elements.length != 0) {
+            RenderOptions elementOptions = options.setOutsidePrecedence(precedence() + 1);
+            elements[0].render(MATH_ML_NODE, out, elementOptions);
+            for(int i=1; i<elements.length; i++) {
+                delimiter.render(MATH_ML_NODE, out, options);
+                elements[i].render(MATH_ML_NODE, out, elementOptions);
+            }
         }
-        return list;
+        out.endElement();
     }
 
-    private String renderString(RenderMode<String> renderMode, RenderOptions options) {
-        if(elements.length == 0) return "";
-        if(elements.length == 1) return elements[0].render(renderMode, options);
+    private void renderString(RenderMode<String> renderMode, Appendable out, RenderOptions options) throws IOException {
+        if(elements.length == 0) return;
+        if(elements.length == 1) {
+            elements[0].render(renderMode, out, options);
+            return;
+        }
 
         String delimiter = this.delimiter.render(renderMode, options);
         options = options.setOutsidePrecedence(precedence() + 1);
 
-        StringBuilder str = new StringBuilder(elements[0].render(renderMode, options));
-        for (int i = 1; i < elements.length; i++)
-            str.append(delimiter).append(elements[i].render(renderMode, options));
-        return str.toString();
+        elements[0].render(renderMode, out, options);
+        for (int i = 1; i < elements.length; i++) {
+            out.append(delimiter);
+            elements[i].render(renderMode, out, options);
+        }
     }
 }
@@ -1,18 +1,27 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
-import com.github.rccookie.xml.Text;
+
+import static com.github.rccookie.math.rendering.RenderMode.*;
 
 final class Literal implements RenderableExpression {
 
     final boolean operator;
     final String value;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Literal(boolean operator, String value) {
         this.operator = operator;
         this.value = Arguments.checkNull(value, "value");
+        hash = Objects.hash(getClass(), this.operator, this.value);
     }
 
     @Override
@@ -20,6 +29,21 @@ final class Literal implements RenderableExpression {
         return value;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Literal that = (Literal) o;
+        return hash == that.hash
+                && operator == that.operator
+                && value.equals(that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.MAX;
@@ -42,8 +66,13 @@ final class Literal implements RenderableExpression {
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node n = new Node(operator ? "mo" : "mi");
-        n.children.add(new Text(value));
-        return n;
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement(operator ? "mo" : "mi");
+        out.text(value);
+        out.endElement();
     }
 }
@@ -0,0 +1,150 @@
+package com.github.rccookie.math.rendering;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.github.rccookie.util.Arguments;
+import com.github.rccookie.xml.Node;
+
+/**
+ * Writes the markup as escaped text into an appendable, as soon as it is received. Elements
+ * without content are written as empty-element tags.
+ */
+final class MarkupWriter implements MathMLWriter {
+
+    private static final Map<MathMLRenderMode, TextRenderMode> MARKUP_MODES = new ConcurrentHashMap<>();
+
+    private final Appendable out;
+    private final Deque<String> open = new ArrayDeque<>();
+    /**
+     * Whether the start tag of the element opened last has not been closed yet,
+     * so attributes can still be added.
+     */
+    private boolean inStartTag = false;
+
+    MarkupWriter(Appendable out) {
+        this.out = out;
+    }
+
+    @Override
+    public void startElement(String tag) throws IOException {
+        Arguments.checkNull(tag, "tag");
+        closeStartTag();
+        out.append('<').append(tag);
+        open.push(tag);
+        inStartTag = true;
+    }
+
+    @Override
+    public void attribute(String name, String value) throws IOException {
+        Arguments.checkNull(name, "name");
+        Arguments.checkNull(value, "value");
+        if(!inStartTag)
+            throw new IllegalStateException("Attributes must be written before the content of an element");
+        out.append(' ').append(name).append("=\"");
+        escape(value, true);
+        out.append('"');
+    }
+
+    @Override
+    public void text(String text) throws IOException {
+        Arguments.checkNull(text, "text");
+        if(open.isEmpty())
+            throw new IllegalStateException("No open element");
+        closeStartTag();
+        escape(text, false);
+    }
+
+    @Override
+    public void endElement() throws IOException {
+        String tag = open.poll();
+        if(tag == null)
+            throw new IllegalStateException("No open element");
+        if(inStartTag) {
+            out.append("/>");
+            inStartTag = false;
+        }
+        else out.append("</").append(tag).append('>');
+    }
+
+    @Override
+    public void node(Node node) throws IOException {
+        Arguments.checkNull(node, "node");
+        closeStartTag();
+        out.append(node.toString());
+    }
+
+    /**
+     * Adds the given, already written markup to the content of the currently open element.
+     */
+    void markup(String markup) throws IOException {
+        closeStartTag();
+        out.append(markup);
+    }
+
+    /**
+     * Returns the number of characters written so far, or -1 if unknown.
+     */
+    long position() {
+        return out instanceof CharSequence ? ((CharSequence) out).length() : -1;
+    }
+
+    /**
+     * Returns whether the start tag of the element opened last is still open, thus the next
+     * output starts with its closing bracket.
+     */
+    boolean inStartTag() {
+        return inStartTag;
+    }
+
+    /**
+     * Returns the markup written since the given {@link #position()}, without the closing
+     * bracket of a start tag which was open at that position.
+     *
+     * @param inStartTag The value of {@link #inStartTag()} at that position
+     */
+    String writtenSince(long position, boolean inStartTag) {
+        CharSequence written = (CharSequence) out;
+        int start = (int) position;
+        if(inStartTag && written.length() > start)
+            start++;
+        return written.subSequence(start, written.length()).toString();
+    }
+
+    /**
+     * Returns the render mode which renders the markup of the given render mode as text.
+     * Unlike the rendered nodes, the text can be used without recursing through the
+     * structure of the markup.
+     */
+    static TextRenderMode markupMode(MathMLRenderMode mode) {
+        return MARKUP_MODES.computeIfAbsent(mode, m -> (e, out, o) -> m.render(e, new MarkupWriter(out), o));
+    }
+
+    private void closeStartTag() throws IOException {
+        if(inStartTag) {
+            out.append('>');
+            inStartTag = false;
+        }
+    }
+
+    private void escape(String str, boolean attribute) throws IOException {
+        int start = 0;
+        for(int i=0; i<str.length(); i++) {
+            String escaped;
+            switch(str.charAt(i)) {
+                case '&': escaped = "&amp;"; break;
+                case '<': escaped = "&lt;"; break;
+                case '>': escaped = "&gt;"; break;
+                case '"': escaped = attribute ? "&quot;" : null; break;
+                default: escaped = null;
+            }
+            if(escaped == null) continue;
+            out.append(str, start, i).append(escaped);
+            start = i + 1;
+        }
+        out.append(str, start, str.length());
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.rccookie.math.rendering;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import com.github.rccookie.xml.Node;
+
+/**
+ * A render mode with MathML output, which can be written directly into a {@link MathMLWriter},
+ * without creating the {@link Node} representation of every subexpression first.
+ */
+@FunctionalInterface
+public interface MathMLRenderMode extends RenderMode<Node> {
+
+    /**
+     * Renders the given expression and writes the markup into the given writer.
+     *
+     * @param e The expression to render
+     * @param out The writer to write into
+     * @param options The options to use
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void render(RenderableExpression e, MathMLWriter out, RenderableExpression.RenderOptions options) throws IOException;
+
+    @Override
+    default Node render(RenderableExpression e, RenderableExpression.RenderOptions options) {
+        NodeWriter out = new NodeWriter();
+        try {
+            render(e, out, options);
+        } catch(IOException ex) {
+            throw new UncheckedIOException(ex); // Not thrown by NodeWriter
+        }
+        return out.result();
+    }
+}
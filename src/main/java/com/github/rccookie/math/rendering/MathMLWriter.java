@@ -0,0 +1,71 @@
+package com.github.rccookie.math.rendering;
+
+import java.io.IOException;
+
+import com.github.rccookie.util.Arguments;
+import com.github.rccookie.xml.Node;
+
+/**
+ * Receives MathML markup as a sequence of events, without the markup having to be built
+ * as a tree of {@link Node}s first. An element is written by calling {@link #startElement(String)},
+ * followed by its attributes, then its content, and finally {@link #endElement()}.
+ */
+public interface MathMLWriter {
+
+    /**
+     * Opens a new element with the given tag name, as a child of the currently open element.
+     *
+     * @param tag The tag name of the element
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void startElement(String tag) throws IOException;
+
+    /**
+     * Adds an attribute to the element opened last. Attributes have to be written before
+     * any content of the element.
+     *
+     * @param name The name of the attribute
+     * @param value The value of the attribute
+     * @throws IOException If an I/O error occurs while writing
+     * @throws IllegalStateException If the element already has content
+     */
+    void attribute(String name, String value) throws IOException;
+
+    /**
+     * Adds the given text to the content of the currently open element.
+     *
+     * @param text The text to add, without any escaping
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void text(String text) throws IOException;
+
+    /**
+     * Closes the currently open element.
+     *
+     * @throws IOException If an I/O error occurs while writing
+     * @throws IllegalStateException If no element is open
+     */
+    void endElement() throws IOException;
+
+    /**
+     * Adds the given, already built node to the content of the currently open element. The
+     * writer may keep a reference to the node, thus it should not be modified afterwards.
+     *
+     * @param node The node to add
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void node(Node node) throws IOException;
+
+
+    /**
+     * Returns a MathML writer which writes the markup as text into the given appendable, for
+     * example a {@link java.io.Writer}. Nodes added using {@link #node(Node)} are written
+     * using their {@link Node#toString()} representation.
+     *
+     * @param out The appendable to write into
+     * @return A MathML writer writing into the appendable
+     */
+    static MathMLWriter of(Appendable out) {
+        return new MarkupWriter(Arguments.checkNull(out, "out"));
+    }
+}
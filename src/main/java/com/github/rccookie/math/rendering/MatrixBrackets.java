@@ -1,15 +1,25 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
+import static com.github.rccookie.math.rendering.RenderMode.*;
+
 final class MatrixBrackets implements RenderableExpression {
 
     private final RenderableExpression inner;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     MatrixBrackets(RenderableExpression inner) {
         this.inner = Arguments.checkNull(inner, "inner");
+        hash = Objects.hash(getClass(), this.inner);
     }
 
     @Override
@@ -17,6 +27,20 @@ final class MatrixBrackets implements RenderableExpression {
         return "matrixBrackets("+inner+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        MatrixBrackets that = (MatrixBrackets) o;
+        return hash == that.hash
+                && Structural.equal(inner, that.inner);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.BRACKETS;
@@ -27,6 +51,11 @@ final class MatrixBrackets implements RenderableExpression {
         return new Brackets(options.matrixBrackets, inner).renderInline(options);
     }
 
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        new Brackets(options.matrixBrackets, inner).renderInline(out, options);
+    }
+
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         return new Brackets(options.matrixBrackets, inner).renderAsciiArt(options);
@@ -37,13 +66,37 @@ final class MatrixBrackets implements RenderableExpression {
         return new Brackets(options.matrixBrackets, inner).renderLatex(options);
     }
 
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        new Brackets(options.matrixBrackets, inner).renderLatex(out, options);
+    }
+
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return new Brackets(options.matrixBrackets, inner).renderMathMLNode(options);
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        new Brackets(options.matrixBrackets, inner).renderMathMLNode(out, options);
     }
 
     @Override
     public <T> T render(RenderMode<T> mode, RenderOptions options) {
-        return new Brackets(options.matrixBrackets, inner).render(mode, options);
+        T result = Renderer.lookup(this, mode, options);
+        return result != null ? result : Renderer.store(this, mode, options, new Brackets(options.matrixBrackets, inner).render(mode, options));
     }
+    @Override
+    public void render(RenderMode<String> mode, Appendable out, RenderOptions options) throws IOException {
+        if(options.cache != null)
+            out.append(render(mode, options));
+        else new Brackets(options.matrixBrackets, inner).render(mode, out, options);
+    }
+    @Override
+    public void render(RenderMode<Node> mode, MathMLWriter out, RenderOptions options) throws IOException {
+        if(options.cache != null)
+            Renderer.renderCompletely(this, mode, out, options);
+        else new Brackets(options.matrixBrackets, inner).render(mode, out, options);
+    }
+
 }
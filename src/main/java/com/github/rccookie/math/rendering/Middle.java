@@ -1,19 +1,26 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
-import com.github.rccookie.xml.Text;
 
 import static com.github.rccookie.math.rendering.RenderMode.*;
 
 final class Middle implements RenderableExpression {
 
     private final RenderableExpression a, b;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Middle(RenderableExpression a, RenderableExpression b) {
         this.a = Arguments.checkNull(a, "a");
         this.b = Arguments.checkNull(b, "b");
+        hash = Objects.hash(getClass(), this.a, this.b);
     }
 
     @Override
@@ -21,6 +28,21 @@ final class Middle implements RenderableExpression {
         return "mid("+a+", "+b+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Middle that = (Middle) o;
+        return hash == that.hash
+                && Structural.equal(a, that.a)
+                && Structural.equal(b, that.b);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.MID;
@@ -28,9 +50,16 @@ final class Middle implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence() + 1);
         String space = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? "" : " ";
-        return a.render(INLINE, options) + space + "|" + space + b.render(INLINE, options);
+        a.render(INLINE, out, options);
+        out.append(space).append("|").append(space);
+        b.render(INLINE, out, options);
     }
 
     @Override
@@ -44,24 +73,42 @@ final class Middle implements RenderableExpression {
         int height = Math.max(a.center(), b.center()), depth = Math.max(a.height()-a.center(), b.height()-b.center());
         int totalHeight = height + depth;
         AsciiArt barArt = new AsciiArt(totalHeight, i -> i==totalHeight-1 ? space+"|"+space : bar).setCenter(height);
-        return a.appendCenter(barArt).appendCenter(b);
+        return new AsciiLayout(a).appendCenter(barArt).appendCenter(b).toAsciiArt();
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence() + 1);
         String space = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? "" : "\\;";
-        return "\\left."+a.render(LATEX, options)+space+"\\middle|"+space+b.render(LATEX, options)+"\\right.";
+        out.append("\\left.");
+        a.render(LATEX, out, options);
+        out.append(space).append("\\middle|").append(space);
+        b.render(LATEX, out, options);
+        out.append("\\right.");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(precedence() + 1);
-        Node o = new Node("mo");
-        o.children.add(new Text("|"));
-        o.attributes.put("separator", "true");
-        o.attributes.put("fence", "true");
-        o.attributes.put("stretchy", "true");
-        return Utils.join(a.render(MATH_ML_NODE, options), o, b.render(MATH_ML_NODE, options));
+        out.startElement("mrow");
+        a.render(MATH_ML_NODE, out, options);
+        out.startElement("mo");
+        out.attribute("separator", "true");
+        out.attribute("fence", "true");
+        out.attribute("stretchy", "true");
+        out.text("|");
+        out.endElement();
+        b.render(MATH_ML_NODE, out, options);
+        out.endElement();
     }
 }
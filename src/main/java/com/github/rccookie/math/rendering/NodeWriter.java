@@ -0,0 +1,87 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.github.rccookie.util.Arguments;
+import com.github.rccookie.xml.Node;
+import com.github.rccookie.xml.Text;
+
+/**
+ * Builds the {@link Node} tree of the written markup, which must consist of exactly one
+ * root element.
+ */
+final class NodeWriter implements MathMLWriter {
+
+    private final Deque<Node> open = new ArrayDeque<>();
+    private Node result = null;
+    /**
+     * The number of nodes written so far.
+     */
+    private long count = 0;
+
+    @Override
+    public void startElement(String tag) {
+        Node element = new Node(Arguments.checkNull(tag, "tag"));
+        add(element);
+        open.push(element);
+    }
+
+    @Override
+    public void attribute(String name, String value) {
+        Node element = current();
+        if(!element.children.isEmpty())
+            throw new IllegalStateException("Attributes must be written before the content of an element");
+        element.attributes.put(Arguments.checkNull(name, "name"), Arguments.checkNull(value, "value"));
+    }
+
+    @Override
+    public void text(String text) {
+        current().children.add(new Text(Arguments.checkNull(text, "text")));
+        count++;
+    }
+
+    @Override
+    public void endElement() {
+        current();
+        open.pop();
+    }
+
+    @Override
+    public void node(Node node) {
+        add(Arguments.checkNull(node, "node"));
+    }
+
+    /**
+     * Returns the number of nodes written so far. Nodes written using {@link #node(Node)}
+     * are counted as one node.
+     */
+    long count() {
+        return count;
+    }
+
+    /**
+     * Returns the written root element.
+     */
+    Node result() {
+        if(result == null || !open.isEmpty())
+            throw new IllegalStateException("Incomplete markup");
+        return result;
+    }
+
+    private Node current() {
+        Node element = open.peek();
+        if(element == null)
+            throw new IllegalStateException("No open element");
+        return element;
+    }
+
+    private void add(Node node) {
+        count++;
+        if(!open.isEmpty())
+            open.peek().children.add(node);
+        else if(result == null)
+            result = node;
+        else throw new IllegalStateException("Multiple root elements");
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.rccookie.math.rendering;
+
+import java.math.BigDecimal;
+
+import com.github.rccookie.util.Arguments;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Formats the cells of numeric grids. A cell renders exactly like the corresponding
+ * {@link RenderableExpression#num(long)}, {@link RenderableExpression#num(double)} or
+ * {@link RenderableExpression#num(BigDecimal)}. Most cells get rendered as a single number
+ * literal, whose text is computed directly from the value and the render options, without
+ * creating any expression. Integers which are too small to ever be shown in scientific
+ * notation or abbreviated are shown the same way with any render options, so no decision
+ * has to be taken for them at all. Only the other cells, shown in scientific notation, as
+ * fraction or abbreviated, are created as expressions.
+ */
+final class NumberFormatter {
+
+    /**
+     * Integers with a magnitude below this value never get rendered in scientific notation,
+     * and have less digits than any {@link RenderableExpression.RenderOptions#maxDigits}.
+     */
+    private static final long PLAIN_INT_MAX = 10000000;
+    private static final BigDecimal PLAIN_DECIMAL_MAX = BigDecimal.valueOf(PLAIN_INT_MAX);
+
+    private NumberFormatter() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Returns the text of the number literal the given value gets rendered as with the given
+     * options, or <code>null</code> if it has to be rendered using {@link #format(long)}.
+     */
+    @Nullable
+    static String literal(long value, RenderableExpression.RenderOptions options) {
+        if(value > -PLAIN_INT_MAX && value < PLAIN_INT_MAX)
+            return Long.toString(value);
+        return Rational.literal(value, 1, true, options);
+    }
+
+    /**
+     * Returns the text of the number literal the given value gets rendered as with the given
+     * options, or <code>null</code> if it has to be rendered using {@link #format(double)}.
+     */
+    @Nullable
+    static String literal(double value, RenderableExpression.RenderOptions options) {
+        if(value > -PLAIN_INT_MAX && value < PLAIN_INT_MAX && value == Math.rint(value))
+            return Long.toString((long) value);
+        return Rational.literal(value, true, options);
+    }
+
+    /**
+     * Returns the text of the number literal the given value gets rendered as with the given
+     * options, or <code>null</code> if it has to be rendered using {@link #format(BigDecimal)}.
+     */
+    @Nullable
+    static String literal(BigDecimal value, RenderableExpression.RenderOptions options) {
+        BigDecimal stripped = value.stripTrailingZeros();
+        if(stripped.scale() <= 0 && stripped.abs().compareTo(PLAIN_DECIMAL_MAX) < 0)
+            return stripped.toBigInteger().toString();
+        return Rational.literal(value, true, options);
+    }
+
+    static RenderableExpression format(long value) {
+        if(value > -PLAIN_INT_MAX && value < PLAIN_INT_MAX)
+            return new NumberLiteral(Long.toString(value));
+        return Rational.of(value, 1, true);
+    }
+
+    static RenderableExpression format(double value) {
+        if(!Double.isFinite(value))
+            throw new IllegalArgumentException("Cannot render non-finite value "+value);
+        if(value > -PLAIN_INT_MAX && value < PLAIN_INT_MAX && value == Math.rint(value))
+            return new NumberLiteral(Long.toString((long) value));
+        return Rational.of(value, true);
+    }
+
+    static RenderableExpression format(BigDecimal value) {
+        Arguments.checkNull(value, "value");
+        BigDecimal stripped = value.stripTrailingZeros();
+        if(stripped.scale() <= 0 && stripped.abs().compareTo(PLAIN_DECIMAL_MAX) < 0)
+            return new NumberLiteral(stripped.toBigInteger().toString());
+        return Rational.of(value, true);
+    }
+}
@@ -1,16 +1,25 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
-import com.github.rccookie.xml.Text;
+
+import static com.github.rccookie.math.rendering.RenderMode.*;
 
 final class NumberLiteral implements RenderableExpression {
 
     final String value;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     NumberLiteral(String value) {
         this.value = Arguments.checkNull(value, "value");
+        hash = Objects.hash(getClass(), this.value);
     }
 
     @Override
@@ -23,6 +32,20 @@ final class NumberLiteral implements RenderableExpression {
         return value;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        NumberLiteral that = (NumberLiteral) o;
+        return hash == that.hash
+                && value.equals(that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public String renderInline(RenderOptions options) {
         return value.replace('\n', ' ');
@@ -40,8 +63,13 @@ final class NumberLiteral implements RenderableExpression {
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node n = new Node("mn");
-        n.children.add(new Text(value));
-        return n;
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mn");
+        out.text(value);
+        out.endElement();
     }
 }
@@ -0,0 +1,256 @@
+package com.github.rccookie.math.rendering;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Objects;
+
+import com.github.rccookie.math.Precedence;
+import com.github.rccookie.util.Arguments;
+import com.github.rccookie.xml.Node;
+
+import org.jetbrains.annotations.Nullable;
+
+import static com.github.rccookie.math.rendering.RenderMode.*;
+
+/**
+ * A grid of numbers, stored as primitive values instead of one expression per cell. It
+ * renders like a {@link Grid} of the corresponding {@link RenderableExpression#num(long)}
+ * expressions, but formats the cells directly from the values using {@link NumberFormatter}
+ * and lays them out itself. Only cells which are not rendered as plain number literal are
+ * created as expressions while rendering.
+ */
+final class NumericGrid implements RenderableExpression {
+
+    final int rows, columns;
+    /**
+     * The values row by row; exactly one of the arrays is set.
+     */
+    @Nullable
+    final long[] longs;
+    @Nullable
+    final double[] doubles;
+    @Nullable
+    final BigDecimal[] decimals;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
+
+    private NumericGrid(int rows, int columns, @Nullable long[] longs, @Nullable double[] doubles, @Nullable BigDecimal[] decimals) {
+        if(rows == 0 || columns == 0)
+            throw new IllegalArgumentException("At least one element required");
+        this.rows = rows;
+        this.columns = columns;
+        this.longs = longs;
+        this.doubles = doubles;
+        this.decimals = decimals;
+        hash = Objects.hash(getClass(), rows, columns, Arrays.hashCode(longs), Arrays.hashCode(doubles), Arrays.hashCode(decimals));
+    }
+
+    static NumericGrid of(long[][] values) {
+        int columns = Arguments.checkNull(values, "values").length != 0 ? values[0].length : 0;
+        long[] longs = new long[values.length * columns];
+        for(int i=0; i<values.length; i++) {
+            if(Arguments.checkNull(values[i], "values[" + i + "]").length != columns)
+                throw new IllegalArgumentException("Rows must be of the same size");
+            System.arraycopy(values[i], 0, longs, i * columns, columns);
+        }
+        return new NumericGrid(values.length, columns, longs, null, null);
+    }
+
+    static NumericGrid of(double[][] values) {
+        int columns = Arguments.checkNull(values, "values").length != 0 ? values[0].length : 0;
+        double[] doubles = new double[values.length * columns];
+        for(int i=0; i<values.length; i++) {
+            if(Arguments.checkNull(values[i], "values[" + i + "]").length != columns)
+                throw new IllegalArgumentException("Rows must be of the same size");
+            System.arraycopy(values[i], 0, doubles, i * columns, columns);
+        }
+        return new NumericGrid(values.length, columns, null, checkFinite(doubles), null);
+    }
+
+    static NumericGrid of(BigDecimal[][] values) {
+        int columns = Arguments.checkNull(values, "values").length != 0 ? values[0].length : 0;
+        BigDecimal[] decimals = new BigDecimal[values.length * columns];
+        for(int i=0; i<values.length; i++) {
+            if(Arguments.deepCheckNull(values[i], "values[" + i + "]").length != columns)
+                throw new IllegalArgumentException("Rows must be of the same size");
+            System.arraycopy(values[i], 0, decimals, i * columns, columns);
+        }
+        return new NumericGrid(values.length, columns, null, null, decimals);
+    }
+
+    static NumericGrid column(long[] values) {
+        return new NumericGrid(Arguments.checkNull(values, "values").length, 1, values.clone(), null, null);
+    }
+
+    static NumericGrid column(double[] values) {
+        return new NumericGrid(Arguments.checkNull(values, "values").length, 1, null, checkFinite(values.clone()), null);
+    }
+
+    static NumericGrid column(BigDecimal[] values) {
+        return new NumericGrid(Arguments.deepCheckNull(values, "values").length, 1, null, null, values.clone());
+    }
+
+    private static double[] checkFinite(double[] values) {
+        for(double v : values)
+            if(!Double.isFinite(v))
+                throw new IllegalArgumentException("Cannot render non-finite value "+v);
+        return values;
+    }
+
+    @Override
+    public String toString() {
+        return "grid("+rows+"x"+columns+", "+(longs != null ? Arrays.toString(longs) : doubles != null ? Arrays.toString(doubles) : Arrays.toString(decimals))+")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        NumericGrid that = (NumericGrid) o;
+        return hash == that.hash
+                && rows == that.rows
+                && columns == that.columns
+                && Arrays.equals(longs, that.longs)
+                && Arrays.equals(doubles, that.doubles)
+                && Arrays.equals(decimals, that.decimals);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public int precedence() {
+        return rows == 1 && columns == 1 ? Rational.PRECEDENCE : Precedence.GRID;
+    }
+
+    @Override
+    public String renderInline(RenderOptions options) {
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        options = cellOptions(options);
+        String comma = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? "," : ", ";
+        String space = options.spaceMode == RenderOptions.SpaceMode.COMPACT ? " " : "  ";
+        for(int i=0, index=0; i<rows; i++) {
+            if(i != 0) out.append(comma);
+            for(int j=0; j<columns; j++, index++) {
+                if(j != 0) out.append(space);
+                String literal = literal(index, options);
+                if(literal != null)
+                    out.append(literal);
+                else cell(index).render(INLINE, out, options);
+            }
+        }
+    }
+
+    @Override
+    public AsciiArt renderAsciiArt(RenderOptions options) {
+        options = cellOptions(options);
+        AsciiGrid grid = new AsciiGrid(rows, columns, options.spaceMode == RenderOptions.SpaceMode.COMPACT ? 1 : 2);
+        for(int i=0, index=0; i<rows; i++) for(int j=0; j<columns; j++, index++) {
+            String literal = literal(index, options);
+            grid.set(i, j, literal != null ? new AsciiArt(literal) : cell(index).render(ASCII_ART, options));
+        }
+        return grid.toAsciiArt();
+    }
+
+    @Override
+    public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        options = cellOptions(options);
+        out.append("\\begin{matrix}");
+        for(int i=0, index=0; i<rows; i++) {
+            for(int j=0; j<columns; j++, index++) {
+                if(j != 0) out.append("&");
+                String literal = literal(index, options);
+                if(literal != null)
+                    out.append(literal);
+                else cell(index).render(LATEX, out, options);
+            }
+            if(i != rows-1)
+                out.append("\\\\");
+        }
+        out.append("\\end{matrix}");
+    }
+
+    @Override
+    public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        options = cellOptions(options);
+        out.startElement("mtable");
+        for(int i=0, index=0; i<rows; i++) {
+            out.startElement("mtr");
+            for(int j=0; j<columns; j++, index++) {
+                out.startElement("mtd");
+                String literal = literal(index, options);
+                if(literal != null) {
+                    out.startElement("mn");
+                    out.text(literal);
+                    out.endElement();
+                }
+                else cell(index).render(MATH_ML_NODE, out, options);
+                out.endElement();
+            }
+            out.endElement();
+        }
+        out.endElement();
+    }
+
+    /**
+     * Checks the number of cells against the output size allowed by the {@link RenderBudget}
+     * of the given options, and returns the options to render the cells with.
+     */
+    private RenderOptions cellOptions(RenderOptions options) {
+        options.budget.checkOutputSize((long) rows * columns);
+        return options.setOutsidePrecedence(Precedence.MIN);
+    }
+
+    /**
+     * Returns the text of the number literal the cell with the given index gets rendered as,
+     * or <code>null</code> if it has to be rendered as {@link #cell(int)}.
+     */
+    @Nullable
+    private String literal(int index, RenderOptions options) {
+        if(longs != null)
+            return NumberFormatter.literal(longs[index], options);
+        if(doubles != null)
+            return NumberFormatter.literal(doubles[index], options);
+        return NumberFormatter.literal(decimals[index], options);
+    }
+
+    /**
+     * Returns the number expression of the cell with the given index.
+     */
+    private RenderableExpression cell(int index) {
+        if(longs != null)
+            return NumberFormatter.format(longs[index]);
+        if(doubles != null)
+            return NumberFormatter.format(doubles[index]);
+        return NumberFormatter.format(decimals[index]);
+    }
+
+    /**
+     * Returns the equivalent grid of number expressions.
+     */
+    Grid toGrid() {
+        RenderableExpression[][] elements = new RenderableExpression[rows][columns];
+        for(int i=0; i<rows; i++) for(int j=0; j<columns; j++)
+            elements[i][j] = cell(i * columns + j);
+        return new Grid(elements);
+    }
+}
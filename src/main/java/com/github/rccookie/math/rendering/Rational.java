@@ -1,34 +1,84 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
+import java.util.Objects;
 
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.xml.Node;
 
 import org.jetbrains.annotations.Nullable;
 
+import static com.github.rccookie.math.rendering.RenderMode.*;
+
 final class Rational implements RenderableExpression {
 
-    final BigInteger n,d;
+    /**
+     * The precedence of any number, regardless of how it gets rendered.
+     */
+    //noinspection DataFlowIssue
+    static final int PRECEDENCE = Math.min(Math.min(Precedence.NEGATE, Precedence.MULTIPLY), Precedence.POWER);
+
+    /**
+     * The numerator and denominator as longs, if both are {@link #isSmall(long) small}. Most
+     * numbers are, and for those all rendering decisions are taken using primitive arithmetic.
+     * Whenever that would overflow, the BigInteger arithmetic is used instead.
+     */
+    private final long ln, ld;
+    private final boolean small;
+    /**
+     * The numerator and denominator as BigIntegers. For small numbers, they are only created
+     * once needed by the BigInteger arithmetic, see {@link #n()} and {@link #d()}.
+     */
+    @Nullable
+    private BigInteger n, d;
     final boolean precise;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
+    /**
+     * Memoized result of {@link #getFactorToPowerOfTen()}, 0 if there is no such factor, or
+     * null if not computed yet.
+     */
+    @Nullable
+    private BigInteger factorToPowerOfTen;
 
     Rational(BigInteger n, BigInteger d, boolean precise) {
-        if(d.equals(BigInteger.ZERO))
+        this(reduce(n, d), precise);
+    }
+
+    /**
+     * Creates n/d from the already reduced fraction {n, d} with d &gt; 0.
+     */
+    private Rational(BigInteger[] reduced, boolean precise) {
+        this.n = reduced[0];
+        this.d = reduced[1];
+        small = isSmall(this.n) && isSmall(this.d);
+        ln = small ? this.n.longValue() : 0;
+        ld = small ? this.d.longValue() : 0;
+        this.precise = precise;
+        hash = structuralHash();
+    }
+
+    private Rational(long n, long d, boolean precise) {
+        if(d == 0)
             throw new ArithmeticException("Division by zero");
-        if(n.equals(BigInteger.ZERO)) {
-            this.n = BigInteger.ZERO;
-            this.d = BigInteger.ONE;
-        } else if(n.equals(d))
-            this.n = this.d = BigInteger.ONE;
+        if(n == 0) d = 1;
         else {
-            BigInteger gcd = n.abs().gcd(d.abs()).multiply(d.compareTo(BigInteger.ZERO) > 0 ? BigInteger.ONE : BigInteger.ONE.negate());
-            this.n = n.divide(gcd);
-            this.d = d.divide(gcd);
+            long gcd = gcd(Math.abs(n), Math.abs(d));
+            if(d < 0) gcd = -gcd;
+            n /= gcd;
+            d /= gcd;
         }
+        ln = n;
+        ld = d;
+        small = true;
         this.precise = precise;
+        hash = structuralHash();
     }
 
     Rational(BigDecimal value, boolean precise) {
@@ -52,22 +102,227 @@ final class Rational implements RenderableExpression {
         BigInteger gcd = n.abs().gcd(d.abs()).multiply(d.compareTo(BigInteger.ZERO) > 0 ? BigInteger.ONE : BigInteger.ONE.negate());
         this.n = n.divide(gcd);
         this.d = d.divide(gcd);
+        small = isSmall(this.n) && isSmall(this.d);
+        ln = small ? this.n.longValue() : 0;
+        ld = small ? this.d.longValue() : 0;
         this.precise = precise;
+        hash = structuralHash();
+    }
+
+    /**
+     * Creates -x without reducing it again, keeping any memoized values.
+     */
+    private Rational(Rational x) {
+        n = x.n != null ? x.n.negate() : null;
+        d = x.d;
+        ln = -x.ln;
+        ld = x.ld;
+        small = x.small;
+        precise = x.precise;
+        hash = structuralHash();
+        factorToPowerOfTen = x.factorToPowerOfTen;
+    }
+
+    /**
+     * Computes the hash code from the longs for small numbers, which are never equal to
+     * numbers which are not small.
+     */
+    private int structuralHash() {
+        if(small)
+            return 31 * (31 * (31 * getClass().hashCode() + Long.hashCode(ln)) + Long.hashCode(ld)) + Boolean.hashCode(precise);
+        return Objects.hash(getClass(), n, d, precise);
+    }
+
+    /**
+     * Returns the numerator as BigInteger.
+     */
+    private BigInteger n() {
+        BigInteger n = this.n;
+        if(n == null) // Racy, but BigInteger is immutable
+            this.n = n = BigInteger.valueOf(ln);
+        return n;
+    }
+
+    /**
+     * Returns the denominator as BigInteger.
+     */
+    private BigInteger d() {
+        BigInteger d = this.d;
+        if(d == null)
+            this.d = d = BigInteger.valueOf(ld);
+        return d;
+    }
+
+    private boolean isInteger() {
+        return small ? ld == 1 : d.equals(BigInteger.ONE);
+    }
+
+    private boolean isOne() {
+        return small && ln == 1 && ld == 1;
+    }
+
+    private static BigInteger[] reduce(BigInteger n, BigInteger d) {
+        if(d.equals(BigInteger.ZERO))
+            throw new ArithmeticException("Division by zero");
+        if(n.equals(BigInteger.ZERO))
+            return new BigInteger[] { BigInteger.ZERO, BigInteger.ONE };
+        if(n.equals(d))
+            return new BigInteger[] { BigInteger.ONE, BigInteger.ONE };
+        BigInteger gcd = n.abs().gcd(d.abs()).multiply(d.compareTo(BigInteger.ZERO) > 0 ? BigInteger.ONE : BigInteger.ONE.negate());
+        return new BigInteger[] { n.divide(gcd), d.divide(gcd) };
+    }
+
+    /**
+     * Returns gcd(x, 10<sup>k</sup>) for x &gt; 0, which is much cheaper than a full gcd
+     * for huge numbers.
+     */
+    private static BigInteger gcdWithPowerOfTen(BigInteger x, int k) {
+        return BigInteger.valueOf(5).pow(Utils.fiveCount(x, k)).shiftLeft(Math.min(x.getLowestSetBit(), k));
+    }
+
+    static Rational of(long n, long d, boolean precise) {
+        if(isSmall(n) && isSmall(d))
+            return new Rational(n, d, precise);
+        return new Rational(BigInteger.valueOf(n), BigInteger.valueOf(d), precise);
+    }
+
+    /**
+     * Creates the same number as <code>new Rational(new BigDecimal(value+""), precise)</code>.
+     * Most doubles are the closest double to a short decimal number m / 10<sup>k</sup>, and
+     * if that number is the only one with k decimal places which rounds to the double, it is
+     * also the one {@link Double#toString(double)} returns. Such numbers are found using
+     * double arithmetic without creating any intermediate strings or big numbers.
+     */
+    static Rational of(double value, boolean precise) {
+        int k = decimalPlaces(value);
+        if(k >= 0)
+            return new Rational((long) Math.rint(value * DOUBLE_POWERS_OF_TEN[k]), POWERS_OF_TEN[k], precise);
+        return of(new BigDecimal(value+""), precise);
+    }
+
+    static Rational of(BigDecimal value, boolean precise) {
+        if(isSmallDecimal(value))
+            return new Rational(value.unscaledValue().longValue(), POWERS_OF_TEN[value.scale()], precise);
+        return new Rational(value, precise);
+    }
+
+    /**
+     * Returns the number of decimal places k of the short decimal number m / 10<sup>k</sup>
+     * described in {@link #of(double, boolean)}, or -1 if there is no such number.
+     */
+    private static int decimalPlaces(double value) {
+        double ulp = Math.ulp(value);
+        for(int k=0; k<DOUBLE_POWERS_OF_TEN.length && ulp * DOUBLE_POWERS_OF_TEN[k] < 1; k++) {
+            double scaled = value * DOUBLE_POWERS_OF_TEN[k];
+            if(Math.abs(scaled) >= 0x1p53) break;
+            if(Math.rint(scaled) / DOUBLE_POWERS_OF_TEN[k] == value)
+                return k;
+        }
+        return -1;
+    }
+
+    /**
+     * Returns whether the given value is a small numerator over a power of ten which fits
+     * into a long.
+     */
+    private static boolean isSmallDecimal(BigDecimal value) {
+        return value.scale() >= 0 && value.scale() < POWERS_OF_TEN.length && isSmall(value.unscaledValue());
+    }
+
+    /**
+     * Returns the text of the number literal <code>of(n, d, precise)</code> gets rendered as
+     * with the given options, without creating it, or <code>null</code> if it gets rendered
+     * as anything else, or if that cannot be decided using long arithmetic. Takes the same
+     * decisions as {@link #represent(RenderOptions)}.
+     */
+    @Nullable
+    static String literal(long n, long d, boolean precise, RenderOptions options) {
+        if(!isSmall(n) || !isSmall(d))
+            return null;
+        if(d == 0)
+            throw new ArithmeticException("Division by zero");
+        if(n == 0) d = 1;
+        else {
+            long gcd = gcd(Math.abs(n), Math.abs(d));
+            if(d < 0) gcd = -gcd;
+            n /= gcd;
+            d /= gcd;
+        }
+        checkDigits(Math.max(bitLength(n), bitLength(d)), options);
+
+        if(options.scientific && n != 0) {
+            if(d == 1) {
+                if(n >= NO_SCIENTIFIC_LONG_MAX) return null;
+            }
+            else {
+                Boolean needed = scientificNeeded(Math.abs(n), d);
+                if(needed == null || needed) return null;
+            }
+        }
+        if(d == 1) // Rendered as integer in both decimal modes
+            return digitCount(Math.abs(n)) <= options.maxDigits ? Long.toString(n) : null;
+
+        RenderOptions.DecimalMode mode = options.decimalMode;
+        if(mode == RenderOptions.DecimalMode.SMART)
+            mode = !precise || d > 1000 ? RenderOptions.DecimalMode.FORCE_DECIMAL : RenderOptions.DecimalMode.DECIMAL_IF_POSSIBLE;
+        if(mode == RenderOptions.DecimalMode.DECIMAL_IF_POSSIBLE)
+            mode = getDecimalIfPossibleMode(Math.abs(n), d, options.precision);
+        return mode == RenderOptions.DecimalMode.FORCE_DECIMAL ? toDecimalString(n, d, options.precision) : null;
+    }
+
+    /**
+     * Returns the text of the number literal <code>of(value, precise)</code> gets rendered as,
+     * as described in {@link #literal(long, long, boolean, RenderOptions)}.
+     */
+    @Nullable
+    static String literal(double value, boolean precise, RenderOptions options) {
+        int k = decimalPlaces(value);
+        if(k >= 0)
+            return literal((long) Math.rint(value * DOUBLE_POWERS_OF_TEN[k]), POWERS_OF_TEN[k], precise, options);
+        return literal(new BigDecimal(value+""), precise, options);
+    }
+
+    /**
+     * Returns the text of the number literal <code>of(value, precise)</code> gets rendered as,
+     * as described in {@link #literal(long, long, boolean, RenderOptions)}.
+     */
+    @Nullable
+    static String literal(BigDecimal value, boolean precise, RenderOptions options) {
+        if(isSmallDecimal(value))
+            return literal(value.unscaledValue().longValue(), POWERS_OF_TEN[value.scale()], precise, options);
+        return null;
     }
 
     @Override
     public String toString() {
-        return "num("+n+", "+d+", "+precise+")";
+        return "num("+n()+", "+d()+", "+precise+")";
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Rational that = (Rational) o;
+        if(hash != that.hash || small != that.small || precise != that.precise)
+            return false;
+        if(small)
+            return ln == that.ln && ld == that.ld;
+        return n.equals(that.n) && d.equals(that.d);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
     }
 
     @Override
     public int precedence() {
-        //noinspection DataFlowIssue
-        return Math.min(Math.min(Precedence.NEGATE, Precedence.MULTIPLY), Precedence.POWER);
+        return PRECEDENCE;
     }
 
     private BigDecimal toBigDecimal(RenderOptions options) {
-        MathContext context = new MathContext(n.abs().divide(d).toString().length() + options.precision + 3, RoundingMode.HALF_UP);
+        BigInteger n = n(), d = d();
+        MathContext context = new MathContext(Utils.digitCount(n.abs().divide(d)) + options.precision + 3, RoundingMode.HALF_UP);
         return new BigDecimal(n, context).divide(new BigDecimal(d, context), context).setScale(context.getPrecision(), context.getRoundingMode());
     }
 
@@ -91,36 +346,120 @@ final class Rational implements RenderableExpression {
         return render(RenderableExpression::renderMathMLNode, options);
     }
 
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        Representation r = represent(options);
+        r.expression.render(MATH_ML_NODE, out, r.options);
+    }
+
     @Override
     public <T> T render(RenderMode<T> renderMode, RenderOptions options) {
+        T result = Renderer.lookup(this, renderMode, options);
+        if(result != null) return result;
+        Representation r = represent(options);
+        return Renderer.store(this, renderMode, options, r.expression.render(renderMode, r.options));
+    }
+    @Override
+    public void render(RenderMode<String> mode, Appendable out, RenderOptions options) throws IOException {
+        if(options.cache != null)
+            out.append(render(mode, options));
+        else {
+            Representation r = represent(options);
+            r.expression.render(mode, out, r.options);
+        }
+    }
+    @Override
+    public void render(RenderMode<Node> mode, MathMLWriter out, RenderOptions options) throws IOException {
+        if(options.cache != null)
+            Renderer.renderCompletely(this, mode, out, options);
+        else {
+            Representation r = represent(options);
+            r.expression.render(mode, out, r.options);
+        }
+    }
+
+
+    private Representation represent(RenderOptions options) {
+        checkDigits(small ? Math.max(bitLength(ln), bitLength(ld)) : Math.max(n.bitLength(), d.bitLength()), options);
         if(options.scientific && scientificNeeded(options))
-            return renderScientific(renderMode, options);
+            return representScientific(options);
         options = options.setScientific(false);
         switch(getDecimalMode(options)) {
-            case FORCE_DECIMAL: return renderForceDecimal(renderMode, options);
-            case FORCE_FRACTION: return renderForceFraction(renderMode, options);
+            case FORCE_DECIMAL:
+                if(isInteger())
+                    return new Representation(numerator(options), options);
+                return new Representation(new NumberLiteral(toDecimalString(options)), options);
+            case FORCE_FRACTION: return representFraction(options);
             default: throw new AssertionError();
         }
     }
 
-    private <T> T renderScientific(RenderMode<T> renderMode, RenderOptions options) {
+    /**
+     * Checks the digit count of a numerator or denominator with the given bit length against
+     * the output size allowed by the {@link RenderBudget} of the given options.
+     */
+    private static void checkDigits(int bitLength, RenderOptions options) {
+        // Converting huge numbers takes long in any representation. A number is at least
+        // 2^(bitLength-1), thus it has at least floor((bitLength-1) * log10(2)) + 1 digits.
+        if(options.budget.maxOutputSize != Integer.MAX_VALUE)
+            options.budget.checkOutputSize((long) ((bitLength - 1) * 0.30102999) + 1);
+    }
+
+    private Representation representScientific(RenderOptions options) {
         ScientificNotation s = calculateScientificNotation(options);
         RenderableExpression expr = new Superscript(new NumberLiteral("10"), new NumberLiteral(s.exponent+""));
         if(s.factor != null)
             expr = RenderableExpression.mult(s.factor, expr);
         if(s.negative)
             expr = RenderableExpression.neg(expr);
-        return expr.render(renderMode, options.setScientific(false).setSpaceMode(options.spaceMode == RenderOptions.SpaceMode.FORCE ? RenderOptions.SpaceMode.FORCE : RenderOptions.SpaceMode.COMPACT));
+        return new Representation(expr, options.setScientific(false).setSpaceMode(options.spaceMode == RenderOptions.SpaceMode.FORCE ? RenderOptions.SpaceMode.FORCE : RenderOptions.SpaceMode.COMPACT));
     }
 
-    private <T> T renderForceDecimal(RenderMode<T> renderMode, RenderOptions options) {
-        return new NumberLiteral(toDecimalString(options)).render(renderMode, options);
+    private Representation representFraction(RenderOptions options) {
+        if(isInteger())
+            return new Representation(numerator(options), options);
+        return new Representation(new Fraction(numerator(options), small ? integer(ld, options) : integer(d, options)), options);
     }
 
-    private <T> T renderForceFraction(RenderMode<T> renderMode, RenderOptions options) {
-        if(d.equals(BigInteger.ONE))
-            return new NumberLiteral(n.toString()).render(renderMode, options);
-        return new Fraction(new NumberLiteral(n.toString()), new NumberLiteral(d.toString())).render(renderMode, options);
+    private RenderableExpression numerator(RenderOptions options) {
+        return small ? integer(ln, options) : integer(n, options);
+    }
+
+    /**
+     * Returns x as number literal, or abbreviated like {@link #integer(BigInteger, RenderOptions)}.
+     */
+    private static RenderableExpression integer(long x, RenderOptions options) {
+        if(digitCount(Math.abs(x)) <= options.maxDigits)
+            return new NumberLiteral(Long.toString(x));
+        return integer(BigInteger.valueOf(x), options);
+    }
+
+    /**
+     * Returns x as number literal, or abbreviated to its leading and trailing digits and its
+     * digit count if it has more than {@link RenderOptions#maxDigits} digits. Only those digits
+     * are converted to decimal.
+     */
+    private static RenderableExpression integer(BigInteger x, RenderOptions options) {
+        // 2^(3k) < 10^k
+        if(x.bitLength() <= 3L * options.maxDigits)
+            return new NumberLiteral(x.toString());
+        BigInteger abs = x.abs();
+        int digits = Utils.digitCount(abs);
+        if(digits <= options.maxDigits)
+            return new NumberLiteral(x.toString());
+
+        int trailing = options.maxDigits / 2, leading = options.maxDigits - trailing;
+        String lead = (x.signum() < 0 ? "-" : "") + abs.divide(Utils.pow10(digits - leading));
+        String trail = abs.mod(Utils.pow10(trailing)).toString();
+        trail = "0".repeat(trailing - trail.length()) + trail;
+
+        StringBuilder count = new StringBuilder(Integer.toString(digits));
+        for(int i=count.length()-3; i>0; i-=3)
+            count.insert(i, ' ');
+        return RenderableExpression.concat(
+                RenderableExpression.concat(RenderableExpression.concat(new NumberLiteral(lead), SpecialLiteral.LDOTS), new NumberLiteral(trail)),
+                RenderableExpression.text(" (" + count + " digits)")
+        );
     }
 
 
@@ -135,42 +474,61 @@ final class Rational implements RenderableExpression {
 
     private RenderOptions.DecimalMode getDecimalIfPossibleMode(RenderOptions options) {
 
-        if(d.equals(BigInteger.ONE))
+        if(isInteger())
             return RenderOptions.DecimalMode.FORCE_FRACTION;
+        if(small) {
+            RenderOptions.DecimalMode mode = getDecimalIfPossibleMode(Math.abs(ln), ld, options.precision);
+            if(mode != null) return mode;
+        }
+        BigInteger n = n(), d = d();
         if(n.signum() < 0)
-            return new Rational(n.negate(), d, precise).getDecimalIfPossibleMode(options);
+            return new Rational(this).getDecimalIfPossibleMode(options);
 
-        BigInteger factor = Utils.getFactorToPowerOfTen(d);
+        BigInteger factor = getFactorToPowerOfTen();
         if(factor == null)
             return RenderOptions.DecimalMode.FORCE_FRACTION;
 
         if(n.compareTo(d) >= 0)
-            return Utils.log(BigInteger.TEN, d.multiply(factor)) > options.precision ? RenderOptions.DecimalMode.FORCE_FRACTION : RenderOptions.DecimalMode.FORCE_DECIMAL;
+            return Utils.log10(d.multiply(factor)) > options.precision ? RenderOptions.DecimalMode.FORCE_FRACTION : RenderOptions.DecimalMode.FORCE_DECIMAL;
+
+        int len = Utils.decimalShift(n, d) - 1;
+        if(len > options.precision)
+            return RenderOptions.DecimalMode.FORCE_FRACTION;
+        return len + Utils.digitCount(n.multiply(factor)) > options.precision ? RenderOptions.DecimalMode.FORCE_FRACTION : RenderOptions.DecimalMode.FORCE_DECIMAL;
+    }
 
-        int len = 0;
-        BigInteger nScaled = n.multiply(BigInteger.TEN);
-        while(nScaled.compareTo(d) < 0) {
-            nScaled = nScaled.multiply(BigInteger.TEN);
-            if(++len > options.precision)
-                return RenderOptions.DecimalMode.FORCE_FRACTION;
+    /**
+     * Returns {@link Utils#getFactorToPowerOfTen(BigInteger)} of the denominator.
+     */
+    @Nullable
+    private BigInteger getFactorToPowerOfTen() {
+        BigInteger factor = factorToPowerOfTen;
+        if(factor == null) { // Racy, but BigInteger is immutable
+            factor = Utils.getFactorToPowerOfTen(d());
+            factorToPowerOfTen = factor = factor != null ? factor : BigInteger.ZERO;
         }
-        return len + n.multiply(factor).toString().length() > options.precision ? RenderOptions.DecimalMode.FORCE_FRACTION : RenderOptions.DecimalMode.FORCE_DECIMAL;
+        return factor.signum() != 0 ? factor : null;
     }
 
     private RenderOptions.DecimalMode getSmartDecimalMode(RenderOptions options) {
-        if(!precise || d.compareTo(BigInteger.valueOf(1000)) > 0)
+        if(!precise || (small ? ld > 1000 : d.compareTo(BigInteger.valueOf(1000)) > 0))
             return RenderOptions.DecimalMode.FORCE_DECIMAL;
         return getDecimalIfPossibleMode(options);
     }
 
     private static final BigDecimal NO_SCIENTIFIC_RANGE_MIN = new BigDecimal("0.001");
     private static final BigDecimal NO_SCIENTIFIC_RANGE_MAX = new BigDecimal("10000");
-    private static final BigInteger NO_SCIENTIFIC_INT_MAX = BigInteger.valueOf(10000000);
+    private static final long NO_SCIENTIFIC_LONG_MAX = 10000000;
+    private static final BigInteger NO_SCIENTIFIC_INT_MAX = BigInteger.valueOf(NO_SCIENTIFIC_LONG_MAX);
 
     private boolean scientificNeeded(RenderOptions options) {
-        if(n.equals(BigInteger.ZERO)) return false;
-
-        if(d.equals(BigInteger.ONE) && n.compareTo(NO_SCIENTIFIC_INT_MAX) < 0) return false;
+        if(small) {
+            if(ln == 0) return false;
+            if(ld == 1) return ln >= NO_SCIENTIFIC_LONG_MAX;
+            Boolean needed = scientificNeeded(Math.abs(ln), ld);
+            if(needed != null) return needed;
+        }
+        else if(d.equals(BigInteger.ONE)) return n.compareTo(NO_SCIENTIFIC_INT_MAX) >= 0;
 
         BigDecimal value = toBigDecimal(options.setPrecision(10));
         if(value.signum() < 0) value = value.negate();
@@ -179,30 +537,32 @@ final class Rational implements RenderableExpression {
     }
 
     private ScientificNotation calculateScientificNotation(RenderOptions options) {
-        if(n.signum() < 0)
-            return new Rational(n.negate(), d, precise).calculateScientificNotation(options).negate();
+        if(small) {
+            ScientificNotation s = calculateScientificNotation(ln, ld, precise);
+            if(s != null) return s;
+        }
+        if(n().signum() < 0)
+            return new Rational(this).calculateScientificNotation(options).negate();
 
         // 2/1000 -> 2000/1000 -> 2E-3
-        BigInteger n = this.n, d = this.d;
-        long e = 0;
+        BigInteger n = n(), d = d();
         if(n.compareTo(d) < 0) {
-            do {
-                e--;
-                n = n.multiply(BigInteger.TEN);
-            } while(n.compareTo(d) < 0);
-            if(n.compareTo(d) == 0) return new ScientificNotation(e);
-            return new ScientificNotation(new Rational(n, d, precise), e);
+            int e = Utils.decimalShift(n, d);
+            n = n.multiply(Utils.pow10(e));
+            if(n.compareTo(d) == 0) return new ScientificNotation(-e);
+            // n and d are coprime, so gcd(n*10^e, d) = gcd(10^e, d)
+            BigInteger gcd = gcdWithPowerOfTen(d, e);
+            return new ScientificNotation(new Rational(new BigInteger[] { n.divide(gcd), d.divide(gcd) }, precise), -e);
         }
         else {
-            while(n.compareTo(d) > 0) { // 1000/3 -> 1000/300 -> 10/3E2
-                e++;
-                d = d.multiply(BigInteger.TEN);
-            }
-            if(n.compareTo(d) == 0) return new ScientificNotation(e);
-            e--;
-            n = n.multiply(BigInteger.TEN);
-            Rational factor = new Rational(n, d, precise);
-            if(factor.n.equals(BigInteger.ONE) && factor.d.equals(BigInteger.ONE))
+            // 1000/3 -> 1000/300 -> 10/3E2
+            int e = Utils.decimalShift(d, n) - 1;
+            d = d.multiply(Utils.pow10(e));
+            if(n.compareTo(d.multiply(BigInteger.TEN)) == 0) return new ScientificNotation(e + 1);
+            // n and d/10^e are coprime, so gcd(n, d) = gcd(n, 10^e)
+            BigInteger gcd = gcdWithPowerOfTen(n, e);
+            Rational factor = new Rational(new BigInteger[] { n.divide(gcd), d.divide(gcd) }, precise);
+            if(factor.isOne())
                 return new ScientificNotation(e);
             return new ScientificNotation(factor, e);
         }
@@ -210,43 +570,293 @@ final class Rational implements RenderableExpression {
 
 
     private String toDecimalString(RenderOptions options) {
-        if(d.equals(BigInteger.ONE))
-            return n.toString();
+        if(isInteger())
+            return n().toString();
+
+        if(small) {
+            String str = toDecimalString(ln, ld, options.precision);
+            if(str != null) return str;
+        }
 
+        BigInteger n = n();
         if(n.signum() < 0)
-            return "-" + new Rational(n.negate(), d, precise).toDecimalString(options);
+            return "-" + new Rational(this).toDecimalString(options);
 
-        BigInteger factor = Utils.getFactorToPowerOfTen(d);
+        BigInteger factor = getFactorToPowerOfTen();
         if(factor != null) return preciseDecimalString(factor, options);
 
-        String str = toBigDecimal(options).setScale(n.divide(d).abs().toString().length() + options.precision, RoundingMode.HALF_UP).toPlainString();
+        BigInteger d = d();
+        String str = toBigDecimal(options).setScale(Utils.digitCount(n.divide(d).abs()) + options.precision, RoundingMode.HALF_UP).toPlainString();
         int dot = str.indexOf('.');
         if(str.length() - dot - 1 <= options.precision) return str;
         return str.substring(0, dot + options.precision + 1);
     }
 
     private String preciseDecimalString(BigInteger factor, RenderOptions options) {
-        if(this.n.compareTo(this.d) < 0) {
+        if(n().compareTo(d()) < 0) {
             StringBuilder str = new StringBuilder("0.");
-            BigInteger n = this.n.multiply(BigInteger.TEN);
-            while(n.compareTo(this.d) < 0) {
-                str.append('0');
-                n = n.multiply(BigInteger.TEN);
+            str.append("0".repeat(Utils.decimalShift(n(), d()) - 1));
+            BigInteger n = n().multiply(factor);
+            int len = Utils.digitCount(n);
+            if(str.length() + len <= options.precision + 2)
+                return str.append(n).toString();
+            // Only convert the digits that will be shown
+            int shown = Math.max(options.precision - str.length(), 0);
+            return str.append(n.divide(Utils.pow10(len - shown))).substring(0, options.precision) + 3;
+        }
+        // 14/10
+        BigInteger n = n().multiply(factor), d = d().multiply(factor);
+        int dot = Utils.log10(d);
+        int dotIndex = Utils.digitCount(n) - dot;
+        if(dot <= options.precision) {
+            String nStr = n.toString();
+            return nStr.substring(0, dotIndex) + '.' + nStr.substring(dotIndex);
+        }
+        String nStr = n.divide(Utils.pow10(dot - options.precision)).toString();
+        return nStr.substring(0, dotIndex) + '.' + nStr.substring(dotIndex);
+    }
+
+
+
+    // The following methods take the same decisions as the ones above using long arithmetic.
+    // They return null if that would overflow, or if the BigDecimal arithmetic above rounds
+    // in a way that might change the result.
+
+    private static final long[] POWERS_OF_TEN = new long[19];
+    /**
+     * The same powers as doubles, all of which are exact.
+     */
+    private static final double[] DOUBLE_POWERS_OF_TEN = new double[POWERS_OF_TEN.length];
+    static {
+        POWERS_OF_TEN[0] = 1;
+        DOUBLE_POWERS_OF_TEN[0] = 1;
+        for(int i=1; i<POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i-1] * 10;
+            DOUBLE_POWERS_OF_TEN[i] = POWERS_OF_TEN[i];
+        }
+    }
+
+    /**
+     * Returns whether the given value is within &plusmn;2<sup>62</sup>, which leaves enough
+     * room to negate it and to multiply the denominator by 10 without overflowing.
+     */
+    private static boolean isSmall(long x) {
+        return x >= -(1L << 62) && x < (1L << 62);
+    }
+
+    private static boolean isSmall(BigInteger x) {
+        return x.bitLength() < 63;
+    }
+
+    /**
+     * Returns the same as {@link BigInteger#bitLength()} of the given value.
+     */
+    private static int bitLength(long x) {
+        return 64 - Long.numberOfLeadingZeros(x < 0 ? ~x : x);
+    }
+
+    private static long gcd(long a, long b) {
+        while(b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static int digitCount(long x) {
+        int count = 1;
+        while(x >= 10) {
+            x /= 10;
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of zeros after the decimal point of n/d, for 0 &lt; n &lt; d.
+     */
+    private static int leadingZeros(long n, long d) {
+        int zeros = 0;
+        while(n <= (d - 1) / 10) {
+            n *= 10;
+            zeros++;
+        }
+        return zeros;
+    }
+
+    /**
+     * Returns the smallest factor x such that d * x is a power of ten, 0 if there is no such
+     * factor, or -1 if it does not fit into a long.
+     */
+    private static long factorToPowerOfTen(long d) {
+        int twoCount = Long.numberOfTrailingZeros(d), fiveCount = 0;
+        d >>= twoCount;
+        while(d % 5 == 0) {
+            d /= 5;
+            fiveCount++;
+        }
+        if(d != 1) return 0;
+        if(twoCount <= fiveCount)
+            return 1L << (fiveCount - twoCount);
+        long factor = 1;
+        try {
+            for(int i=fiveCount; i<twoCount; i++)
+                factor = Math.multiplyExact(factor, 5);
+        } catch(ArithmeticException e) {
+            return -1;
+        }
+        return factor;
+    }
+
+    /**
+     * Returns the exponent of the power of ten d * factor, where factor is the result of
+     * {@link #factorToPowerOfTen(long)}.
+     */
+    private static int powerOfTenExponent(long d, long factor) {
+        return Long.numberOfTrailingZeros(d) + Long.numberOfTrailingZeros(factor);
+    }
+
+    /**
+     * Compares a*b with c*d, for non-negative arguments.
+     */
+    private static int compareProducts(long a, long b, long c, long d) {
+        int cmp = Long.compare(Math.multiplyHigh(a, b), Math.multiplyHigh(c, d));
+        return cmp != 0 ? cmp : Long.compareUnsigned(a * b, c * d);
+    }
+
+    @Nullable
+    private static RenderOptions.DecimalMode getDecimalIfPossibleMode(long n, long d, int precision) {
+        long factor = factorToPowerOfTen(d);
+        if(factor == 0)
+            return RenderOptions.DecimalMode.FORCE_FRACTION;
+        if(factor < 0) return null;
+
+        if(n >= d)
+            return powerOfTenExponent(d, factor) > precision ? RenderOptions.DecimalMode.FORCE_FRACTION : RenderOptions.DecimalMode.FORCE_DECIMAL;
+
+        int len = leadingZeros(n, d);
+        if(len > precision)
+            return RenderOptions.DecimalMode.FORCE_FRACTION;
+        try {
+            return len + digitCount(Math.multiplyExact(n, factor)) > precision ? RenderOptions.DecimalMode.FORCE_FRACTION : RenderOptions.DecimalMode.FORCE_DECIMAL;
+        } catch(ArithmeticException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Decides whether scientific notation is needed for n/d &gt; 0. The value compared by
+     * {@link #scientificNeeded(RenderOptions)} is rounded to at least 12 significant digits,
+     * which can only make a difference very close to the bounds.
+     */
+    @Nullable
+    private static Boolean scientificNeeded(long n, long d) {
+        // n/d <= 0.001 * (1 - 10^-9)
+        if(compareProducts(n, 1000000000000L, d, 999999999) <= 0) return true;
+        if(compareProducts(n, 1000000000000L, d, 1000000001) < 0) return null;
+        // n/d <= 10000 * (1 - 10^-9)
+        if(compareProducts(n, 100000, d, 999999999) <= 0) return false;
+        if(compareProducts(n, 100000, d, 1000000001) < 0) return null;
+        return true;
+    }
+
+    @Nullable
+    private static ScientificNotation calculateScientificNotation(long n, long d, boolean precise) {
+        if(n < 0) {
+            ScientificNotation s = calculateScientificNotation(-n, d, precise);
+            return s != null ? s.negate() : null;
+        }
+        try {
+            long e = 0;
+            if(n < d) {
+                do {
+                    e--;
+                    n = Math.multiplyExact(n, 10);
+                } while(n < d);
+                if(n == d) return new ScientificNotation(e);
+                return new ScientificNotation(of(n, d, precise), e);
+            }
+            while(n > d) {
+                e++;
+                d = Math.multiplyExact(d, 10);
             }
-            str.append(this.n.multiply(factor));
-            if(str.length() <= options.precision + 2)
+            if(n == d) return new ScientificNotation(e);
+            e--;
+            Rational factor = of(Math.multiplyExact(n, 10), d, precise);
+            if(factor.isOne())
+                return new ScientificNotation(e);
+            return new ScientificNotation(factor, e);
+        } catch(ArithmeticException overflow) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static String toDecimalString(long n, long d, int precision) {
+        if(n < 0) {
+            String str = toDecimalString(-n, d, precision);
+            return str != null ? "-" + str : null;
+        }
+
+        long factor = factorToPowerOfTen(d);
+        if(factor < 0) return null;
+        if(factor != 0) return preciseDecimalString(n, d, factor, precision);
+
+        // BigDecimal arithmetic would round the operands
+        String q = Long.toString(n / d);
+        int mathPrecision = q.length() + precision + 3;
+        if(digitCount(n) > mathPrecision || digitCount(d) > mathPrecision || d > Long.MAX_VALUE / 10)
+            return null;
+
+        StringBuilder str = new StringBuilder(q.length() + precision + 1).append(q).append('.');
+        long r = n % d;
+        for(int i=0; i<precision; i++) {
+            r *= 10;
+            str.append((char) ('0' + r / d));
+            r %= d;
+        }
+        // Rounding can only carry over into the digits shown if the next digit is a 9
+        return r * 10 / d == 9 ? null : str.toString();
+    }
+
+    @Nullable
+    private static String preciseDecimalString(long n, long d, long factor, int precision) {
+        long scaled;
+        try {
+            scaled = Math.multiplyExact(n, factor);
+        } catch(ArithmeticException e) {
+            return null;
+        }
+        if(n < d) {
+            StringBuilder str = new StringBuilder("0.");
+            for(int i=leadingZeros(n, d); i>0; i--)
+                str.append('0');
+            str.append(scaled);
+            if(str.length() <= precision + 2)
                 return str.toString();
-            return str.substring(0, options.precision) + 3;
+            return str.substring(0, precision) + 3;
         }
-        // 14/10
-        BigInteger n = this.n.multiply(factor), d = this.d.multiply(factor);
-        String nStr = n.toString();
+        String nStr = Long.toString(scaled);
 
-        int dot = Utils.log(BigInteger.TEN, d);
+        int dot = powerOfTenExponent(d, factor);
         int dotIndex = nStr.length() - dot;
-        if(dot <= options.precision)
+        if(dot <= precision)
             return nStr.substring(0, dotIndex) + '.' + nStr.substring(dotIndex);
-        return nStr.substring(0, dotIndex) + '.' + nStr.substring(dotIndex, dotIndex + options.precision);
+        return nStr.substring(0, dotIndex) + '.' + nStr.substring(dotIndex, dotIndex + precision);
+    }
+
+    /**
+     * The expression a number gets rendered as, and the options to render it with.
+     */
+    private static final class Representation {
+        final RenderableExpression expression;
+        final RenderOptions options;
+
+        Representation(RenderableExpression expression, RenderOptions options) {
+            this.expression = expression;
+            this.options = options;
+        }
     }
 
     private static class ScientificNotation {
@@ -0,0 +1,129 @@
+package com.github.rccookie.math.rendering;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import com.github.rccookie.util.Arguments;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Limits the resources a single rendering may use. Every render call of an expression and
+ * its subexpressions checks the budget before it starts and after it finished, and throws a
+ * {@link RenderBudgetExceededException} as soon as a limit is exceeded. To use a budget, set
+ * it in the render options using {@link RenderableExpression.RenderOptions#setBudget(RenderBudget)}.
+ *
+ * <p>Like render options, budgets are immutable and can be reused for any number of
+ * renderings. The timeout applies to each rendering separately: its deadline is computed
+ * when the rendering of an expression starts that is not nested in another rendering on the
+ * same thread. Cells rendered in parallel share the deadline of the rendering they belong
+ * to.</p>
+ */
+public final class RenderBudget {
+
+    /**
+     * A budget without any limits.
+     */
+    public static final RenderBudget UNLIMITED = new RenderBudget(Integer.MAX_VALUE, Integer.MAX_VALUE, false, 0, null);
+
+    /**
+     * The maximum number of nested render calls, which is the maximum depth of the rendered
+     * expression tree, plus the depth of expressions created while rendering.
+     */
+    public final int maxDepth;
+    /**
+     * The maximum output size of the rendering and of each subexpression: characters of
+     * text, character cells of ascii art and nodes of MathML. When writing into an
+     * appendable which is a {@link CharSequence}, its total length is limited, otherwise
+     * only the subexpressions rendered as a whole are limited. Grids with more cells and
+     * numbers with more digits than this are rejected before being rendered, even if the
+     * numbers would be shown in scientific notation or abbreviated.
+     */
+    public final int maxOutputSize;
+    private final boolean hasTimeout;
+    /**
+     * The time each rendering may take, in nanoseconds.
+     */
+    private final long timeout;
+    /**
+     * Reports whether the rendering has been cancelled, or <code>null</code> if it cannot
+     * be cancelled.
+     */
+    @Nullable
+    public final BooleanSupplier cancellation;
+
+    private RenderBudget(int maxDepth, int maxOutputSize, boolean hasTimeout, long timeout, @Nullable BooleanSupplier cancellation) {
+        this.maxDepth = maxDepth;
+        this.maxOutputSize = maxOutputSize;
+        this.hasTimeout = hasTimeout;
+        this.timeout = timeout;
+        this.cancellation = cancellation;
+    }
+
+    @Override
+    public String toString() {
+        return "RenderBudget{" +
+                "maxDepth=" + maxDepth +
+                ", maxOutputSize=" + maxOutputSize +
+                ", timeout=" + timeout() +
+                ", cancellation=" + cancellation +
+                '}';
+    }
+
+    /**
+     * Returns the time each rendering may take, or <code>null</code> if there is no timeout.
+     */
+    @Nullable
+    public Duration timeout() {
+        return hasTimeout ? Duration.ofNanos(timeout) : null;
+    }
+
+    public RenderBudget setMaxDepth(int maxDepth) {
+        return new RenderBudget(Arguments.checkRange(maxDepth, 1, null), maxOutputSize, hasTimeout, timeout, cancellation);
+    }
+
+    public RenderBudget setMaxOutputSize(int maxOutputSize) {
+        return new RenderBudget(maxDepth, Arguments.checkRange(maxOutputSize, 1, null), hasTimeout, timeout, cancellation);
+    }
+
+    /**
+     * Returns a budget which allows each rendering to take the given time, or which has no
+     * timeout if <code>null</code>.
+     */
+    public RenderBudget setTimeout(@Nullable Duration timeout) {
+        if(timeout == null)
+            return new RenderBudget(maxDepth, maxOutputSize, false, 0, cancellation);
+        return new RenderBudget(maxDepth, maxOutputSize, true, timeout.toNanos(), cancellation);
+    }
+
+    /**
+     * Returns a budget which is exceeded once the given supplier returns <code>true</code>,
+     * for example <code>future::isCancelled</code>. The supplier is queried once per render
+     * call and may be called from different threads.
+     */
+    public RenderBudget setCancellation(@Nullable BooleanSupplier cancellation) {
+        return new RenderBudget(maxDepth, maxOutputSize, hasTimeout, timeout, cancellation);
+    }
+
+    /**
+     * Checks the budget before a render call nested in the given number of render calls.
+     *
+     * @param start The time the rendering started, in terms of {@link System#nanoTime()}
+     */
+    void check(int level, long start) {
+        if(level >= maxDepth)
+            throw new RenderBudgetExceededException(RenderBudgetExceededException.Reason.DEPTH, "Maximum render depth of " + maxDepth + " exceeded");
+        if(hasTimeout && System.nanoTime() - start > timeout)
+            throw new RenderBudgetExceededException(RenderBudgetExceededException.Reason.DEADLINE, "Render deadline exceeded");
+        if(cancellation != null && cancellation.getAsBoolean())
+            throw new RenderBudgetExceededException(RenderBudgetExceededException.Reason.CANCELLED, "Rendering cancelled");
+    }
+
+    /**
+     * Checks the given output size, or does nothing if it is unknown (negative).
+     */
+    void checkOutputSize(long size) {
+        if(size > maxOutputSize)
+            throw new RenderBudgetExceededException(RenderBudgetExceededException.Reason.OUTPUT_SIZE, "Maximum output size of " + maxOutputSize + " exceeded");
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.rccookie.math.rendering;
+
+import com.github.rccookie.util.Arguments;
+
+/**
+ * Thrown when a rendering exceeds its {@link RenderBudget}. Rendering stops right away, and
+ * no partial result is returned.
+ */
+public final class RenderBudgetExceededException extends RuntimeException {
+
+    /**
+     * The limit that was exceeded.
+     */
+    public enum Reason {
+        /**
+         * {@link RenderBudget#maxDepth} was exceeded.
+         */
+        DEPTH,
+        /**
+         * {@link RenderBudget#maxOutputSize} was exceeded.
+         */
+        OUTPUT_SIZE,
+        /**
+         * The rendering took longer than the timeout set using {@link RenderBudget#setTimeout(java.time.Duration)}.
+         */
+        DEADLINE,
+        /**
+         * {@link RenderBudget#cancellation} reported the rendering as cancelled.
+         */
+        CANCELLED
+    }
+
+    private final Reason reason;
+
+    RenderBudgetExceededException(Reason reason, String message) {
+        super(message);
+        this.reason = Arguments.checkNull(reason, "reason");
+    }
+
+    /**
+     * Returns the limit that was exceeded.
+     */
+    public Reason reason() {
+        return reason;
+    }
+}
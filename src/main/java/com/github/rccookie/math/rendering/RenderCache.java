@@ -0,0 +1,212 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.github.rccookie.util.Arguments;
+import com.github.rccookie.xml.Node;
+
+/**
+ * A size-bounded cache for rendering results, evicting the least recently used entries
+ * first. Rendering results of an expression are cached per render mode and render options,
+ * for the expression itself and every subexpression rendered with it whose result is not
+ * smaller than the minimum result size, as small results are cheaper to render again than
+ * to look up. Expressions are matched structurally, so the results of equal subexpressions
+ * are shared. To use a cache, set it in the render options using {@link RenderableExpression.RenderOptions#setCache(RenderCache)}.
+ *
+ * <p>A cache may be shared between threads and between different render options. The
+ * entries are split into independently locked segments by their hash code, so concurrent
+ * renderings rarely wait for each other. Each segment evicts its own least recently used
+ * entries, thus the eviction order is only approximately the least recently used one.</p>
+ */
+public final class RenderCache {
+
+    /**
+     * The minimum result size used by {@link #RenderCache(int)}.
+     */
+    public static final int DEFAULT_MIN_RESULT_SIZE = 32;
+
+    private static final int MAX_SEGMENTS = 64;
+
+    private final int maxSize;
+    private final int minResultSize;
+    private final Segment[] segments;
+
+    /**
+     * Creates a new, empty render cache with the default minimum result size.
+     *
+     * @param maxSize The maximum number of rendering results to cache
+     */
+    public RenderCache(int maxSize) {
+        this(maxSize, DEFAULT_MIN_RESULT_SIZE);
+    }
+
+    /**
+     * Creates a new, empty render cache.
+     *
+     * @param maxSize The maximum number of rendering results to cache
+     * @param minResultSize The minimum size of cached results of subexpressions: characters
+     *                      of text, character cells of ascii art or nodes of MathML. Results
+     *                      of the expressions being rendered themselves are always cached.
+     */
+    public RenderCache(int maxSize, int minResultSize) {
+        this.maxSize = Arguments.checkRange(maxSize, 1, null);
+        this.minResultSize = Arguments.checkRange(minResultSize, 0, null);
+        int count = Integer.highestOneBit(Math.min(maxSize, Math.min(MAX_SEGMENTS, 4 * Runtime.getRuntime().availableProcessors())));
+        segments = new Segment[count];
+        for(int i=0; i<count; i++)
+            segments[i] = new Segment(maxSize / count + (i < maxSize % count ? 1 : 0));
+    }
+
+    @Override
+    public String toString() {
+        return "RenderCache{size=" + size() + ", maxSize=" + maxSize + ", minResultSize=" + minResultSize + '}';
+    }
+
+    /**
+     * Returns the maximum number of cached rendering results.
+     */
+    public int maxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the minimum size of cached results of subexpressions.
+     */
+    public int minResultSize() {
+        return minResultSize;
+    }
+
+    /**
+     * Returns the number of currently cached rendering results.
+     */
+    public int size() {
+        int size = 0;
+        for(Segment segment : segments) synchronized(segment) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Removes all cached rendering results.
+     */
+    public void clear() {
+        for(Segment segment : segments) synchronized(segment) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Returns the cached rendering result of the given expression, or <code>null</code> if
+     * it is not cached.
+     */
+    @SuppressWarnings("unchecked")
+    <T> T get(RenderableExpression expression, RenderMode<T> mode, RenderableExpression.RenderOptions options) {
+        Key key = new Key(expression, mode, options);
+        Segment segment = segment(key);
+        Object result;
+        synchronized(segment) {
+            result = segment.get(key);
+        }
+        return (T) copy(result);
+    }
+
+    /**
+     * Caches the given rendering result, if it is big enough or <code>always</code> is set,
+     * and returns it.
+     */
+    <T> T put(RenderableExpression expression, RenderMode<T> mode, RenderableExpression.RenderOptions options, T result, boolean always) {
+        if(!always && !isBigEnough(result))
+            return result;
+        Object copy = copy(result);
+        Key key = new Key(expression, mode, options);
+        Segment segment = segment(key);
+        synchronized(segment) {
+            segment.put(key, copy);
+        }
+        return result;
+    }
+
+    private Segment segment(Key key) {
+        int hash = key.hash;
+        return segments[(hash ^ (hash >>> 16)) & (segments.length - 1)];
+    }
+
+    /**
+     * Returns whether the given result is at least of the minimum result size. Nodes are
+     * only counted up to that size.
+     */
+    private boolean isBigEnough(Object result) {
+        if(result instanceof CharSequence)
+            return ((CharSequence) result).length() >= minResultSize;
+        if(result instanceof AsciiArt)
+            return (long) ((AsciiArt) result).width() * ((AsciiArt) result).height() >= minResultSize;
+        if(!(result instanceof Node))
+            return true;
+        int count = 0;
+        Deque<Node> nodes = new ArrayDeque<>();
+        nodes.push((Node) result);
+        while(!nodes.isEmpty() && count < minResultSize) {
+            count++;
+            nodes.pop().children.forEach(nodes::push);
+        }
+        return count >= minResultSize;
+    }
+
+    /**
+     * Nodes are mutable, thus the cache never hands out its own instance.
+     */
+    private static Object copy(Object result) {
+        return result instanceof Node ? Renderer.copy((Node) result) : result;
+    }
+
+
+    /**
+     * A part of the cache, synchronized on itself.
+     */
+    private static final class Segment extends LinkedHashMap<Key, Object> {
+
+        private final int maxSize;
+
+        Segment(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Object> eldest) {
+            return size() > maxSize;
+        }
+    }
+
+    private static final class Key {
+
+        final RenderableExpression expression;
+        final RenderMode<?> mode;
+        final RenderableExpression.RenderOptions options;
+        final int hash;
+
+        Key(RenderableExpression expression, RenderMode<?> mode, RenderableExpression.RenderOptions options) {
+            this.expression = expression;
+            this.mode = mode;
+            this.options = options;
+            hash = 31 * (31 * expression.hashCode() + System.identityHashCode(mode)) + options.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Key)) return false;
+            Key key = (Key) o;
+            return hash == key.hash && mode == key.mode && expression.equals(key.expression) && options.equals(key.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
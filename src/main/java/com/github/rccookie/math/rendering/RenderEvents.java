@@ -0,0 +1,186 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.Set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.SettingControl;
+import jdk.jfr.SettingDefinition;
+import jdk.jfr.StackTrace;
+
+/**
+ * Emits JDK Flight Recorder events for render calls. Top-level render calls are recorded
+ * as {@link RenderEvent}, nested render calls as {@link SubtreeRenderEvent}, which is
+ * disabled by default and limited to a minimum output size. This class is only used if
+ * the <code>jdk.jfr</code> module is present. The event classes are only loaded once the
+ * flight recorder has been initialized, as loading them is expensive otherwise.
+ */
+final class RenderEvents {
+
+    private RenderEvents() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Returns whether any of the events is enabled.
+     */
+    static boolean isEnabled() {
+        return FlightRecorder.isInitialized() && (Probes.RENDER.isEnabled() || Probes.SUBTREE.isEnabled());
+    }
+
+    /**
+     * Begins the event of a render call at the given level, and returns it, or returns
+     * <code>null</code> if the respective event is disabled.
+     */
+    static Object begin(int level) {
+        RenderCallEvent event;
+        if(level == 0 && Probes.RENDER.isEnabled())
+            event = new RenderEvent();
+        else if(level != 0 && Probes.SUBTREE.isEnabled())
+            event = new SubtreeRenderEvent();
+        else return null;
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends and commits the given event, returned by {@link #begin(int)}.
+     *
+     * @param result The result of the render call, or <code>null</code> if the output was
+     *               written
+     * @param outputSize The size of the output, as reported to {@link RenderMetrics}
+     */
+    static void end(Object event, Class<?> type, RenderMode<?> mode, int level, Object result, long outputSize, boolean cacheHit) {
+        RenderCallEvent e = (RenderCallEvent) event;
+        e.end();
+        e.mode = RenderMetricsRegistry.name(mode);
+        e.nodeType = type.getSimpleName();
+        e.depth = level;
+        e.outputSize = outputSize;
+        if(result instanceof AsciiArt) {
+            e.width = ((AsciiArt) result).width();
+            e.height = ((AsciiArt) result).height();
+        }
+        else if((result instanceof CharSequence || (result == null && mode instanceof TextRenderMode)) && outputSize >= 0) {
+            e.width = outputSize;
+            e.height = 1;
+        }
+        e.cacheHit = cacheHit;
+        if(e.shouldCommit())
+            e.commit();
+    }
+
+    /**
+     * Records a render call of the given expression at the given level, which was answered
+     * by the cache.
+     */
+    static void cacheHit(RenderableExpression expression, RenderMode<?> mode, int level, Object result) {
+        Object event = begin(level);
+        if(event != null)
+            end(event, expression.getClass(), mode, level, result, Renderer.size(result), true);
+    }
+
+
+    /**
+     * Used to check whether the events are enabled, without creating an event each time.
+     */
+    private static final class Probes {
+        static final RenderEvent RENDER = new RenderEvent();
+        static final SubtreeRenderEvent SUBTREE = new SubtreeRenderEvent();
+    }
+
+    @Category({ "Math Rendering" })
+    @StackTrace(false)
+    private static abstract class RenderCallEvent extends Event {
+
+        @Label("Render Mode")
+        String mode;
+
+        @Label("Node Type")
+        @Description("Simple name of the class of the rendered expression")
+        String nodeType;
+
+        @Label("Depth")
+        @Description("Number of render calls the render call is nested in")
+        int depth;
+
+        @Label("Output Size")
+        @Description("Characters of text, character cells of ascii art or nodes of MathML; -1 if unknown")
+        long outputSize;
+
+        @Label("Output Width")
+        @Description("Characters per line of text and ascii art")
+        long width;
+
+        @Label("Output Height")
+        @Description("Lines of text and ascii art")
+        long height;
+
+        @Label("Cache Hit")
+        @Description("Whether the result was taken from the render cache")
+        boolean cacheHit;
+    }
+
+    @Name("com.github.rccookie.math.rendering.Render")
+    @Label("Render")
+    @Description("Rendering of an expression which is not a subexpression of another rendered expression")
+    @StackTrace(true)
+    static final class RenderEvent extends RenderCallEvent { }
+
+    @Name("com.github.rccookie.math.rendering.RenderSubtree")
+    @Label("Render Subtree")
+    @Description("Rendering of a subexpression with at least the minimum output size")
+    @Enabled(false)
+    static final class SubtreeRenderEvent extends RenderCallEvent {
+
+        @SettingDefinition
+        @Name("minOutputSize")
+        @Label("Minimum Output Size")
+        @Description("Minimum output size of recorded subtree renders")
+        protected boolean minOutputSize(MinOutputSize setting) {
+            return outputSize >= setting.minimum;
+        }
+    }
+
+    /**
+     * The minimum output size of recorded subtree renders, 1000 by default. If set by multiple
+     * recordings, the smallest value is used.
+     */
+    public static final class MinOutputSize extends SettingControl {
+
+        private static final String DEFAULT = "1000";
+
+        private String value = DEFAULT;
+        private volatile long minimum = Long.parseLong(DEFAULT);
+
+        @Override
+        public String combine(Set<String> values) {
+            long min = Long.MAX_VALUE;
+            for(String v : values)
+                min = Math.min(min, parse(v));
+            return min == Long.MAX_VALUE ? DEFAULT : Long.toString(min);
+        }
+
+        @Override
+        public void setValue(String value) {
+            this.value = value;
+            minimum = parse(value);
+        }
+
+        @Override
+        public String getValue() {
+            return value;
+        }
+
+        private static long parse(String value) {
+            try {
+                return Long.parseLong(value.trim());
+            } catch(NumberFormatException e) {
+                return Long.parseLong(DEFAULT);
+            }
+        }
+    }
+}
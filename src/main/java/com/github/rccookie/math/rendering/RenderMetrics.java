@@ -0,0 +1,41 @@
+package com.github.rccookie.math.rendering;
+
+/**
+ * Receives a record of every render call of an expression, while set using
+ * {@link RenderableExpression#setMetrics(RenderMetrics)}. Without metrics set, render calls
+ * are not measured at all. {@link RenderMetricsRegistry} is the default implementation,
+ * which aggregates the records in memory.
+ *
+ * <p>Render calls are nested, thus the time and allocations of a call include those of the
+ * calls of its subexpressions. Calls answered by a {@link RenderCache} are not measured and
+ * not passed to {@link #record(Class, RenderMode, long, long, long)}, but reported using
+ * {@link #recordCacheHit(Class, RenderMode, long)}. The same applies to calls answered with
+ * the result of an equal subexpression, which was rendered separately because it was nested
+ * too deep. Records may be received concurrently
+ * from different threads.</p>
+ */
+@FunctionalInterface
+public interface RenderMetrics {
+
+    /**
+     * Records a render call.
+     *
+     * @param type The class of the rendered expression
+     * @param mode The render mode used
+     * @param nanos The time the call took, in nanoseconds
+     * @param allocatedBytes The number of bytes allocated by the rendering thread during the
+     *                       call, or -1 if not supported by the JVM
+     * @param outputSize The size of the output: characters for text, character cells for
+     *                   ascii art and written nodes for MathML nodes; -1 if unknown
+     */
+    void record(Class<? extends RenderableExpression> type, RenderMode<?> mode, long nanos, long allocatedBytes, long outputSize);
+
+    /**
+     * Records a render call which was answered by the render cache. Does nothing by default.
+     *
+     * @param type The class of the rendered expression
+     * @param mode The render mode used
+     * @param outputSize The size of the cached output, like for {@link #record(Class, RenderMode, long, long, long)}
+     */
+    default void recordCacheHit(Class<? extends RenderableExpression> type, RenderMode<?> mode, long outputSize) { }
+}
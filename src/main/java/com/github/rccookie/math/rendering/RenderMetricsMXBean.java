@@ -0,0 +1,29 @@
+package com.github.rccookie.math.rendering;
+
+/**
+ * Management interface of a {@link RenderMetricsRegistry}, registered using
+ * {@link RenderMetricsRegistry#registerMBean()}.
+ */
+public interface RenderMetricsMXBean {
+
+    /**
+     * Returns the number of recorded render calls.
+     */
+    long getCalls();
+
+    /**
+     * Returns the number of recorded render calls answered by the render cache, which are
+     * not included in {@link #getCalls()}.
+     */
+    long getCacheHits();
+
+    /**
+     * Returns the metrics per expression class and render mode, most time consuming first.
+     */
+    java.util.List<RenderMetricsRegistry.Stats> getStats();
+
+    /**
+     * Discards all recorded metrics.
+     */
+    void reset();
+}
@@ -0,0 +1,221 @@
+package com.github.rccookie.math.rendering;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import com.github.rccookie.util.Arguments;
+
+/**
+ * Aggregates the recorded render calls in memory, per expression class and render mode.
+ * A registry can be registered as MXBean of the platform MBean server, to be inspected
+ * using tools like JConsole.
+ */
+public final class RenderMetricsRegistry implements RenderMetrics, RenderMetricsMXBean {
+
+    /**
+     * The name under which registries are registered as MXBean.
+     */
+    public static final String OBJECT_NAME = "com.github.rccookie.math.rendering:type=RenderMetrics";
+
+    private final Map<Class<?>, Map<RenderMode<?>, Entry>> entries = new ConcurrentHashMap<>();
+
+    @Override
+    public String toString() {
+        return "RenderMetricsRegistry{calls=" + getCalls() + '}';
+    }
+
+    @Override
+    public void record(Class<? extends RenderableExpression> type, RenderMode<?> mode, long nanos, long allocatedBytes, long outputSize) {
+        Entry entry = entry(type, mode);
+        entry.calls.increment();
+        entry.nanos.add(nanos);
+        if(allocatedBytes >= 0) entry.allocatedBytes.add(allocatedBytes);
+        if(outputSize >= 0) entry.outputSize.add(outputSize);
+    }
+
+    @Override
+    public void recordCacheHit(Class<? extends RenderableExpression> type, RenderMode<?> mode, long outputSize) {
+        entry(type, mode).cacheHits.increment();
+    }
+
+    private Entry entry(Class<? extends RenderableExpression> type, RenderMode<?> mode) {
+        Map<RenderMode<?>, Entry> modes = entries.get(type);
+        if(modes == null)
+            modes = entries.computeIfAbsent(type, t -> new ConcurrentHashMap<>());
+        Entry entry = modes.get(mode);
+        if(entry == null)
+            entry = modes.computeIfAbsent(mode, m -> new Entry());
+        return entry;
+    }
+
+    @Override
+    public long getCalls() {
+        long calls = 0;
+        for(Map<RenderMode<?>, Entry> modes : entries.values())
+            for(Entry entry : modes.values())
+                calls += entry.calls.sum();
+        return calls;
+    }
+
+    @Override
+    public long getCacheHits() {
+        long cacheHits = 0;
+        for(Map<RenderMode<?>, Entry> modes : entries.values())
+            for(Entry entry : modes.values())
+                cacheHits += entry.cacheHits.sum();
+        return cacheHits;
+    }
+
+    @Override
+    public java.util.List<Stats> getStats() {
+        java.util.List<Stats> stats = new ArrayList<>();
+        entries.forEach((type, modes) -> modes.forEach((mode, entry) -> stats.add(new Stats(type, mode, entry))));
+        stats.sort(Comparator.comparingLong(Stats::getNanos).reversed());
+        return stats;
+    }
+
+    /**
+     * Returns the metrics of the given expression class in the given render mode, or
+     * <code>null</code> if no such render call was recorded.
+     */
+    public Stats getStats(Class<? extends RenderableExpression> type, RenderMode<?> mode) {
+        Map<RenderMode<?>, Entry> modes = entries.get(Arguments.checkNull(type, "type"));
+        Entry entry = modes != null ? modes.get(Arguments.checkNull(mode, "mode")) : null;
+        return entry != null ? new Stats(type, mode, entry) : null;
+    }
+
+    @Override
+    public void reset() {
+        entries.clear();
+    }
+
+    /**
+     * Registers this registry as MXBean of the platform MBean server, under {@link #OBJECT_NAME}.
+     *
+     * @throws IllegalStateException If a registry is already registered
+     */
+    public void registerMBean() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, new ObjectName(OBJECT_NAME));
+        } catch(JMException e) {
+            throw new IllegalStateException("Failed to register MXBean", e);
+        }
+    }
+
+    /**
+     * Unregisters the registry registered as MXBean of the platform MBean server, if any.
+     */
+    public static void unregisterMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if(ManagementFactory.getPlatformMBeanServer().isRegistered(name))
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+        } catch(JMException e) {
+            throw new IllegalStateException("Failed to unregister MXBean", e);
+        }
+    }
+
+    /**
+     * Returns a short name for the given render mode.
+     */
+    static String name(RenderMode<?> mode) {
+        if(mode == RenderMode.INLINE) return "INLINE";
+        if(mode == RenderMode.ASCII_ART) return "ASCII_ART";
+        if(mode == RenderMode.LATEX) return "LATEX";
+        if(mode == RenderMode.MATH_ML_NODE) return "MATH_ML_NODE";
+        if(mode == RenderMode.MATH_ML) return "MATH_ML";
+        if(mode == RenderMode.MATH_ML_INLINE) return "MATH_ML_INLINE";
+        return mode.toString();
+    }
+
+
+    private static final class Entry {
+        final LongAdder calls = new LongAdder();
+        final LongAdder nanos = new LongAdder();
+        final LongAdder allocatedBytes = new LongAdder();
+        final LongAdder outputSize = new LongAdder();
+        final LongAdder cacheHits = new LongAdder();
+    }
+
+    /**
+     * A snapshot of the metrics of an expression class in a render mode.
+     */
+    public static final class Stats {
+
+        private final Class<?> type;
+        private final String mode;
+        private final long calls, nanos, allocatedBytes, outputSize, cacheHits;
+
+        private Stats(Class<?> type, RenderMode<?> mode, Entry entry) {
+            this.type = type;
+            this.mode = name(mode);
+            calls = entry.calls.sum();
+            nanos = entry.nanos.sum();
+            allocatedBytes = entry.allocatedBytes.sum();
+            outputSize = entry.outputSize.sum();
+            cacheHits = entry.cacheHits.sum();
+        }
+
+        @Override
+        public String toString() {
+            return getType() + " (" + mode + "): " + calls + " calls, " + nanos + "ns, " + allocatedBytes + " bytes, output size " + outputSize + ", " + cacheHits + " cache hits";
+        }
+
+        /**
+         * Returns the simple name of the expression class.
+         */
+        public String getType() {
+            return type.getSimpleName();
+        }
+
+        /**
+         * Returns the name of the render mode.
+         */
+        public String getMode() {
+            return mode;
+        }
+
+        /**
+         * Returns the number of render calls.
+         */
+        public long getCalls() {
+            return calls;
+        }
+
+        /**
+         * Returns the cumulative time of the render calls, in nanoseconds.
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * Returns the cumulative number of bytes allocated during the render calls.
+         */
+        public long getAllocatedBytes() {
+            return allocatedBytes;
+        }
+
+        /**
+         * Returns the cumulative output size of the render calls.
+         */
+        public long getOutputSize() {
+            return outputSize;
+        }
+
+        /**
+         * Returns the number of render calls answered by the render cache, which are not
+         * included in the other metrics.
+         */
+        public long getCacheHits() {
+            return cacheHits;
+        }
+    }
+}
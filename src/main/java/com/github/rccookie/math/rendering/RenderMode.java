@@ -4,23 +4,23 @@ import com.github.rccookie.xml.Node;
 
 public interface RenderMode<T> {
 
-    RenderMode<String> INLINE = RenderableExpression::renderInline;
+    RenderMode<String> INLINE = (TextRenderMode) RenderableExpression::renderInline;
     RenderMode<AsciiArt> ASCII_ART = RenderableExpression::renderAsciiArt;
-    RenderMode<String> LATEX = RenderableExpression::renderLatex;
-    RenderMode<Node> MATH_ML_NODE = RenderableExpression::renderMathMLNode;
-    RenderMode<Node> MATH_ML = (e,o) -> {
-        Node math = new Node("math");
-        math.attributes.put("displaystyle", "true");
-        math.attributes.put("display", "block");
-        math.children.add(e.render(MATH_ML_NODE, o));
-        return math;
+    RenderMode<String> LATEX = (TextRenderMode) RenderableExpression::renderLatex;
+    RenderMode<Node> MATH_ML_NODE = (MathMLRenderMode) RenderableExpression::renderMathMLNode;
+    RenderMode<Node> MATH_ML = (MathMLRenderMode) (e,out,o) -> {
+        out.startElement("math");
+        out.attribute("displaystyle", "true");
+        out.attribute("display", "block");
+        e.render(MATH_ML_NODE, out, o);
+        out.endElement();
     };
-    RenderMode<Node> MATH_ML_INLINE = (e,o) -> {
-        Node math = new Node("math");
-        math.attributes.put("displaystyle", "false");
-        math.attributes.put("display", "inline");
-        math.children.add(e.render(MATH_ML_NODE, o));
-        return math;
+    RenderMode<Node> MATH_ML_INLINE = (MathMLRenderMode) (e,out,o) -> {
+        out.startElement("math");
+        out.attribute("displaystyle", "false");
+        out.attribute("display", "inline");
+        e.render(MATH_ML_NODE, out, o);
+        out.endElement();
     };
 
     T render(RenderableExpression e, RenderableExpression.RenderOptions options);
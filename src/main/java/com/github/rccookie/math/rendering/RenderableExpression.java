@@ -1,8 +1,14 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
@@ -20,12 +26,36 @@ public interface RenderableExpression {
 
     String renderInline(RenderOptions options);
 
+    /**
+     * Renders this expression in inline mode, and writes the output into the given appendable.
+     * The output is the same as the one of {@link #renderInline(RenderOptions)}.
+     */
+    default void renderInline(Appendable out, RenderOptions options) throws IOException {
+        out.append(renderInline(options));
+    }
+
     AsciiArt renderAsciiArt(RenderOptions options);
 
     String renderLatex(RenderOptions options);
 
+    /**
+     * Renders this expression in LaTeX mode, and writes the output into the given appendable.
+     * The output is the same as the one of {@link #renderLatex(RenderOptions)}.
+     */
+    default void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        out.append(renderLatex(options));
+    }
+
     Node renderMathMLNode(RenderOptions options);
 
+    /**
+     * Renders this expression in MathML mode, and writes the markup into the given writer.
+     * The output is the same as the one of {@link #renderMathMLNode(RenderOptions)}.
+     */
+    default void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.node(renderMathMLNode(options));
+    }
+
     @SuppressWarnings("SpellCheckingInspection")
     default Node renderMathML(RenderOptions options, boolean inline) {
         Node math = new Node("math");
@@ -35,15 +65,154 @@ public interface RenderableExpression {
         return math;
     }
 
+    /**
+     * Renders this expression as a complete MathML element, and writes the markup into the
+     * given writer. The output is the same as the one of {@link #renderMathML(RenderOptions, boolean)}.
+     */
+    @SuppressWarnings("SpellCheckingInspection")
+    default void renderMathML(MathMLWriter out, RenderOptions options, boolean inline) throws IOException {
+        out.startElement("math");
+        out.attribute("displaystyle", !inline+"");
+        out.attribute("display", inline ? "inline" : "block");
+        renderMathMLNode(out, options);
+        out.endElement();
+    }
+
     default <T> T render(RenderMode<T> mode, RenderOptions options) {
+        T result = Renderer.lookup(this, mode, options);
+        if(result != null) return result;
         if(options.autoParenthesis && options.outsidePrecedence > precedence())
-            return par(this).render(mode, options);
-        return mode.render(this, options);
+            result = par(this).render(mode, options);
+        else result = mode.render(this, options);
+        return Renderer.store(this, mode, options, result);
+    }
+
+    /**
+     * Renders this expression using the given render mode, and writes the output into the
+     * given appendable. The output is the same as the one of {@link #render(RenderMode, RenderOptions)}.
+     * It is written directly if the render mode is a {@link TextRenderMode}, like
+     * {@link RenderMode#INLINE} and {@link RenderMode#LATEX}.
+     */
+    default void render(RenderMode<String> mode, Appendable out, RenderOptions options) throws IOException {
+        if(!(mode instanceof TextRenderMode)) {
+            out.append(render(mode, options));
+            return;
+        }
+        if(options.cache != null && Renderer.writeCached(this, mode, out, options))
+            return;
+        if(!Renderer.enter(this, mode, out, options)) {
+            out.append(render(mode, options));
+            return;
+        }
+        boolean completed = false;
+        try {
+            if(options.autoParenthesis && options.outsidePrecedence > precedence())
+                par(this).render(mode, out, options);
+            else ((TextRenderMode) mode).render(this, out, options);
+            completed = true;
+        } finally {
+            Renderer.exit(completed);
+        }
+    }
+
+    /**
+     * Renders this expression using the given render mode, and writes the markup into the
+     * given writer. The output is the same as the one of {@link #render(RenderMode, RenderOptions)}.
+     * It is written directly if the render mode is a {@link MathMLRenderMode}, like
+     * {@link RenderMode#MATH_ML} and {@link RenderMode#MATH_ML_NODE}.
+     */
+    default void render(RenderMode<Node> mode, MathMLWriter out, RenderOptions options) throws IOException {
+        if(!(mode instanceof MathMLRenderMode)) {
+            out.node(render(mode, options));
+            return;
+        }
+        if(options.cache != null && Renderer.writeCached(this, mode, out, options))
+            return;
+        if(!Renderer.enter(this, mode, out, options)) {
+            Renderer.renderCompletely(this, mode, out, options);
+            return;
+        }
+        boolean completed = false;
+        try {
+            if(options.autoParenthesis && options.outsidePrecedence > precedence())
+                par(this).render(mode, out, options);
+            else ((MathMLRenderMode) mode).render(this, out, options);
+            completed = true;
+        } finally {
+            Renderer.exit(completed);
+        }
     }
 
 
 
 
+    /**
+     * Sets whether the static builder methods should return canonical instances for
+     * structurally equal expressions. This reduces the memory usage when many similar
+     * expressions are used, and allows shared subexpressions to be recognized by a
+     * {@link RenderCache}. Disabled by default.
+     */
+    static void setInterning(boolean enabled) {
+        Interner.setEnabled(enabled);
+    }
+
+    /**
+     * Returns whether the static builder methods return canonical instances for structurally
+     * equal expressions.
+     */
+    static boolean isInterning() {
+        return Interner.isEnabled();
+    }
+
+    /**
+     * Sets the metrics which receive a record of every render call, for example a
+     * {@link RenderMetricsRegistry}. <code>null</code> disables the measurement, which
+     * is the default.
+     */
+    static void setMetrics(@Nullable RenderMetrics metrics) {
+        Renderer.setMetrics(metrics);
+    }
+
+    /**
+     * Returns the metrics which receive a record of every render call, or <code>null</code>
+     * if render calls are not measured.
+     */
+    @Nullable
+    static RenderMetrics getMetrics() {
+        return Renderer.getMetrics();
+    }
+
+    /**
+     * Renders the given expressions concurrently on the common fork-join pool.
+     *
+     * @see #renderAll(Collection, RenderMode, RenderOptions, Executor)
+     */
+    static <T> java.util.List<CompletableFuture<T>> renderAll(Collection<? extends RenderableExpression> expressions, RenderMode<T> mode, RenderOptions options) {
+        return renderAll(expressions, mode, options, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Renders the given expressions concurrently using the given executor. The work is split
+     * between as many tasks as the executor can run in parallel. All expressions are rendered
+     * with the same render options, thus they also share the {@link RenderCache}, if set.
+     * The cells of large grids and lists are only rendered in parallel if the executor is a
+     * {@link ForkJoinPool}, on that pool.
+     *
+     * @param expressions The expressions to render
+     * @param mode The render mode to use
+     * @param options The render options to use
+     * @param executor The executor to run the rendering tasks on
+     * @return The rendering results in the order of the given expressions, each completed
+     *         as soon as the expression has been rendered
+     */
+    static <T> java.util.List<CompletableFuture<T>> renderAll(Collection<? extends RenderableExpression> expressions, RenderMode<T> mode, RenderOptions options, Executor executor) {
+        return BatchRenderer.render(expressions, mode, options, executor);
+    }
+
+    private static <T extends RenderableExpression> T intern(T expression) {
+        return Interner.intern(expression);
+    }
+
     static RenderableExpression pi() {
         return SpecialLiteral.PI;
     }
@@ -68,6 +237,22 @@ public interface RenderableExpression {
         return SpecialLiteral.LIMES;
     }
 
+    static RenderableExpression ldots() {
+        return SpecialLiteral.LDOTS;
+    }
+
+    static RenderableExpression cdots() {
+        return SpecialLiteral.CDOTS;
+    }
+
+    static RenderableExpression vdots() {
+        return SpecialLiteral.VDOTS;
+    }
+
+    static RenderableExpression ddots() {
+        return SpecialLiteral.DDOTS;
+    }
+
     static RenderableExpression naturals() {
         return SpecialLiteral.NATURAL_NUMS;
     }
@@ -229,7 +414,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression num(long numerator, long denominator, boolean precise) {
-        return num(BigInteger.valueOf(numerator), BigInteger.valueOf(denominator), precise);
+        return intern(Rational.of(numerator, denominator, precise));
     }
 
     static RenderableExpression num(BigInteger value) {
@@ -241,7 +426,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression num(BigInteger numerator, BigInteger denominator, boolean precise) {
-        return new Rational(numerator, denominator, precise);
+        return intern(new Rational(numerator, denominator, precise));
     }
 
     static RenderableExpression num(double value) {
@@ -249,7 +434,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression num(double value, boolean precise) {
-        return num(new BigDecimal(value+""), precise);
+        return intern(Rational.of(value, precise));
     }
 
     static RenderableExpression num(BigDecimal value) {
@@ -257,23 +442,23 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression num(BigDecimal value, boolean precise) {
-        return new Rational(value, precise);
+        return intern(Rational.of(value, precise));
     }
 
     static RenderableExpression num(String literal) {
-        return new NumberLiteral(literal);
+        return intern(new NumberLiteral(literal));
     }
 
     // ---------------------------------------------------
 
     static RenderableExpression name(String literal) {
-        return new Literal(false, literal);
+        return intern(new Literal(false, literal));
     }
 
     static RenderableExpression name(String inline, String ascii, String unicode, String latex, String mathML) {
         if(Arguments.checkNull(inline, "inline").contains("\n"))
             throw new IllegalArgumentException("Inline name may not contain newline characters");
-        return new SpecialLiteral(false, inline, ascii, unicode, latex, mathML);
+        return intern(new SpecialLiteral(false, inline, ascii, unicode, latex, mathML));
     }
 
     static RenderableExpression name(String inline, AsciiArt ascii, String unicode, String latex, String mathML) {
@@ -283,17 +468,17 @@ public interface RenderableExpression {
     static RenderableExpression name(String inline, AsciiArt ascii, AsciiArt unicode, String latex, Node mathML) {
         if(Arguments.checkNull(inline, "inline").contains("\n"))
             throw new IllegalArgumentException("Inline name may not contain newline characters");
-        return new SpecialLiteral(inline, ascii, unicode, latex, mathML);
+        return intern(new SpecialLiteral(inline, ascii, unicode, latex, mathML));
     }
 
     static RenderableExpression symbol(String literal) {
-        return new Literal(true, literal);
+        return intern(new Literal(true, literal));
     }
 
     static RenderableExpression symbol(String inline, String ascii, String unicode, String latex, String mathML) {
         if(Arguments.checkNull(inline, "inline").contains("\n"))
             throw new IllegalArgumentException("Inline symbol may not contain newline characters");
-        return new SpecialLiteral(true, inline, ascii, unicode, latex, mathML);
+        return intern(new SpecialLiteral(true, inline, ascii, unicode, latex, mathML));
     }
 
     static RenderableExpression symbol(String inline, AsciiArt ascii, String unicode, String latex, String mathML) {
@@ -303,7 +488,7 @@ public interface RenderableExpression {
     static RenderableExpression symbol(String inline, AsciiArt ascii, AsciiArt unicode, String latex, Node mathML) {
         if(Arguments.checkNull(inline, "inline").contains("\n"))
             throw new IllegalArgumentException("Inline symbol may not contain newline characters");
-        return new SpecialLiteral(inline, ascii, unicode, latex, mathML);
+        return intern(new SpecialLiteral(inline, ascii, unicode, latex, mathML));
     }
 
     // ---------------------------------------------------
@@ -333,25 +518,25 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression brackets(Bracket type, RenderableExpression inner) {
-        return new Brackets(type, inner);
+        return intern(new Brackets(type, inner));
     }
 
     static RenderableExpression left(Bracket type, RenderableExpression inner) {
-        return new BracketLiteral(type, true, inner);
+        return intern(new BracketLiteral(type, true, inner));
     }
 
     static RenderableExpression right(Bracket type, RenderableExpression inner) {
-        return new BracketLiteral(type, false, inner);
+        return intern(new BracketLiteral(type, false, inner));
     }
 
     static RenderableExpression matrixBrackets(RenderableExpression inner) {
-        return new MatrixBrackets(inner);
+        return intern(new MatrixBrackets(inner));
     }
 
     // ---------------------------------------------------
 
     static RenderableExpression frac(RenderableExpression numerator, RenderableExpression denominator) {
-        return new Fraction(numerator, denominator);
+        return intern(new Fraction(numerator, denominator));
     }
 
     static RenderableExpression row(RenderableExpression... elements) {
@@ -372,7 +557,42 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression grid(RenderableExpression[]... rows) {
-        return new Grid(rows);
+        return intern(new Grid(rows));
+    }
+
+    /**
+     * Returns an m x n grid which shows only its first and last <code>visible</code> rows and
+     * columns, with the ones in between elided. Only the cells shown are requested from the
+     * given supplier, thus the size of the grid does not affect the rendering cost.
+     *
+     * @param m The number of rows
+     * @param n The number of columns
+     * @param visible The number of leading and trailing rows and columns to show
+     * @param cells Supplies the cell at the given row and column
+     * @return The elided grid
+     */
+    static RenderableExpression grid(int m, int n, int visible, CellSupplier cells) {
+        return intern(Grid.elided(m, n, visible, cells));
+    }
+
+    /**
+     * Returns a grid of the given numbers. It renders like a grid of the respective
+     * {@link #num(double)} expressions, but stores the values directly and is considerably
+     * faster to create and render.
+     *
+     * @param rows The values, row by row
+     * @return A grid of the given numbers
+     */
+    static RenderableExpression grid(double[][] rows) {
+        return intern(NumericGrid.of(rows));
+    }
+
+    static RenderableExpression grid(long[][] rows) {
+        return intern(NumericGrid.of(rows));
+    }
+
+    static RenderableExpression grid(BigDecimal[][] rows) {
+        return intern(NumericGrid.of(rows));
     }
 
     static RenderableExpression vec(RenderableExpression... elements) {
@@ -386,6 +606,33 @@ public interface RenderableExpression {
         return matrix(bracketType, rows);
     }
 
+    static RenderableExpression vec(double[] elements) {
+        return vec(DEFAULT_MATRIX_BRACKET, elements);
+    }
+
+    static RenderableExpression vec(Bracket bracketType, double[] elements) {
+        RenderableExpression grid = intern(NumericGrid.column(elements));
+        return bracketType != null ? brackets(bracketType, grid) : grid;
+    }
+
+    static RenderableExpression vec(long[] elements) {
+        return vec(DEFAULT_MATRIX_BRACKET, elements);
+    }
+
+    static RenderableExpression vec(Bracket bracketType, long[] elements) {
+        RenderableExpression grid = intern(NumericGrid.column(elements));
+        return bracketType != null ? brackets(bracketType, grid) : grid;
+    }
+
+    static RenderableExpression vec(BigDecimal[] elements) {
+        return vec(DEFAULT_MATRIX_BRACKET, elements);
+    }
+
+    static RenderableExpression vec(Bracket bracketType, BigDecimal[] elements) {
+        RenderableExpression grid = intern(NumericGrid.column(elements));
+        return bracketType != null ? brackets(bracketType, grid) : grid;
+    }
+
     static RenderableExpression rowVec(RenderableExpression... elements) {
         return rowVec(DEFAULT_MATRIX_BRACKET, elements);
     }
@@ -403,6 +650,15 @@ public interface RenderableExpression {
         return bracketType != null ? brackets(bracketType, grid) : grid;
     }
 
+    static RenderableExpression matrix(int m, int n, int visible, CellSupplier cells) {
+        return matrixBrackets(grid(m, n, visible, cells));
+    }
+
+    static RenderableExpression matrix(Bracket bracketType, int m, int n, int visible, CellSupplier cells) {
+        RenderableExpression grid = grid(m, n, visible, cells);
+        return bracketType != null ? brackets(bracketType, grid) : grid;
+    }
+
     static RenderableExpression matrix(RenderableExpression[]... rows) {
         return matrixBrackets(grid(rows));
     }
@@ -411,6 +667,30 @@ public interface RenderableExpression {
         return bracketType != null ? brackets(bracketType, grid(rows)) : grid(rows);
     }
 
+    static RenderableExpression matrix(double[][] rows) {
+        return matrixBrackets(grid(rows));
+    }
+
+    static RenderableExpression matrix(Bracket bracketType, double[][] rows) {
+        return bracketType != null ? brackets(bracketType, grid(rows)) : grid(rows);
+    }
+
+    static RenderableExpression matrix(long[][] rows) {
+        return matrixBrackets(grid(rows));
+    }
+
+    static RenderableExpression matrix(Bracket bracketType, long[][] rows) {
+        return bracketType != null ? brackets(bracketType, grid(rows)) : grid(rows);
+    }
+
+    static RenderableExpression matrix(BigDecimal[][] rows) {
+        return matrixBrackets(grid(rows));
+    }
+
+    static RenderableExpression matrix(Bracket bracketType, BigDecimal[][] rows) {
+        return bracketType != null ? brackets(bracketType, grid(rows)) : grid(rows);
+    }
+
     static RenderableExpression augMatrix(RenderableExpression a, RenderableExpression b) {
         return augMatrix(DEFAULT_MATRIX_BRACKET, a, b);
     }
@@ -422,9 +702,13 @@ public interface RenderableExpression {
     // ---------------------------------------------------
 
     static RenderableExpression mid(RenderableExpression a, RenderableExpression b) {
-        if(a instanceof Grid && b instanceof Grid && ((Grid) a).elements.length == ((Grid) b).elements.length)
-            return new AugmentedGrid((Grid) a, (Grid) b);
-        return new Middle(a,b);
+        if((a instanceof Grid || a instanceof NumericGrid) && (b instanceof Grid || b instanceof NumericGrid)) {
+            Grid gridA = a instanceof NumericGrid ? ((NumericGrid) a).toGrid() : (Grid) a;
+            Grid gridB = b instanceof NumericGrid ? ((NumericGrid) b).toGrid() : (Grid) b;
+            if(gridA.elements.length == gridB.elements.length)
+                return intern(new AugmentedGrid(gridA, gridB));
+        }
+        return intern(new Middle(a,b));
     }
 
     static RenderableExpression set(RenderableExpression elementPattern, RenderableExpression predicate) {
@@ -440,7 +724,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression customList(RenderableExpression delimiter, RenderableExpression... values) {
-        return new List(delimiter, values);
+        return intern(new List(delimiter, values));
     }
 
     static RenderableExpression tuple(RenderableExpression... values) {
@@ -460,11 +744,11 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression implicit(RenderableExpression a, RenderableExpression b) {
-        return new Concatenation(a,b,true);
+        return intern(new Concatenation(a,b,true));
     }
 
     static RenderableExpression concat(RenderableExpression a, RenderableExpression b) {
-        return new Concatenation(a,b,false);
+        return intern(new Concatenation(a,b,false));
     }
 
     // ---------------------------------------------------
@@ -578,7 +862,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression infix(RenderableExpression symbol, RenderableExpression a, RenderableExpression b, int precedence, boolean associative, OperatorAlignment alignment) {
-        return new SimpleInfixOperation(a, b, symbol, precedence, associative, alignment);
+        return intern(new SimpleInfixOperation(a, b, symbol, precedence, associative, alignment));
     }
 
     static RenderableExpression infix(String symbol, RenderableExpression a, RenderableExpression b, int precedence, boolean associative) {
@@ -588,7 +872,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression neg(RenderableExpression value) {
-        return new Negate(value);
+        return intern(new Negate(value));
     }
 
     static RenderableExpression not(RenderableExpression value) {
@@ -600,7 +884,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression prefix(RenderableExpression symbol, RenderableExpression value, int precedence, OperatorAlignment alignment) {
-        return new SimplePrefixOperation(value, symbol, precedence, alignment);
+        return intern(new SimplePrefixOperation(value, symbol, precedence, alignment));
     }
 
     static RenderableExpression prefix(String symbol, RenderableExpression value, int precedence) {
@@ -622,7 +906,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression transp(RenderableExpression value) {
-        return new Transposition(value);
+        return intern(new Transposition(value));
     }
 
     static RenderableExpression postfix(RenderableExpression symbol, RenderableExpression value, int precedence) {
@@ -630,7 +914,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression postfix(RenderableExpression symbol, RenderableExpression value, int precedence, OperatorAlignment alignment) {
-        return new SimplePostfixOperation(value, symbol, precedence, alignment);
+        return intern(new SimplePostfixOperation(value, symbol, precedence, alignment));
     }
 
     static RenderableExpression postfix(String symbol, RenderableExpression value, int precedence) {
@@ -647,18 +931,18 @@ public interface RenderableExpression {
 
     static RenderableExpression sup(RenderableExpression a, RenderableExpression b) {
         if(a instanceof Subscript)
-            return new SuperSubscript(((Subscript) a).a, Arguments.checkNull(b, "b"), ((Subscript) a).b);
-        return new Superscript(a,b);
+            return intern(new SuperSubscript(((Subscript) a).a, Arguments.checkNull(b, "b"), ((Subscript) a).b));
+        return intern(new Superscript(a,b));
     }
 
     static RenderableExpression sub(RenderableExpression a, RenderableExpression b) {
         if(a instanceof Superscript)
-            return new SuperSubscript(((Superscript) a).a, ((Superscript) a).b, Arguments.checkNull(b, "b"));
-        return new Subscript(a,b);
+            return intern(new SuperSubscript(((Superscript) a).a, ((Superscript) a).b, Arguments.checkNull(b, "b")));
+        return intern(new Subscript(a,b));
     }
 
     static RenderableExpression exp(RenderableExpression value) {
-        return new Exp(value);
+        return intern(new Exp(value));
     }
 
     static RenderableExpression sqrt(RenderableExpression value) {
@@ -670,11 +954,11 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression root(RenderableExpression degree, RenderableExpression value) {
-        return new Root(degree, value);
+        return intern(new Root(degree, value));
     }
 
     static RenderableExpression text(String text) {
-        return new Text(text);
+        return intern(new Text(text));
     }
 
     static RenderableExpression sum(RenderableExpression subscript, RenderableExpression value) {
@@ -702,7 +986,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression big(RenderableExpression symbol, @Nullable RenderableExpression subscript, @Nullable RenderableExpression superscript, RenderableExpression value) {
-        return new BigSymbol(symbol, subscript, superscript, value);
+        return intern(new BigSymbol(symbol, subscript, superscript, value));
     }
 
     static RenderableExpression integral(@Nullable RenderableExpression lowerBound, @Nullable RenderableExpression upperBound, RenderableExpression value, String indeterminant) {
@@ -710,7 +994,7 @@ public interface RenderableExpression {
     }
 
     static RenderableExpression integral(@Nullable RenderableExpression lowerBound, @Nullable RenderableExpression upperBound, RenderableExpression value, RenderableExpression indeterminant) {
-        return new Integral(lowerBound, upperBound, concat(value, concat(num(" d"), indeterminant)));
+        return intern(new Integral(lowerBound, upperBound, concat(value, concat(num(" d"), indeterminant))));
     }
 
 
@@ -771,11 +1055,50 @@ public interface RenderableExpression {
          * Determines how to render the matrix transposition operator.
          */
         public final TranspositionStyle transpositionStyle;
+        /**
+         * Integers with more digits than this are abbreviated to their leading and trailing
+         * digits and their digit count, like <code>1234…5678 (104 729 digits)</code>, without
+         * converting the whole number to decimal. Does not work if the number has been created
+         * by string.
+         */
+        public final int maxDigits;
+        /**
+         * The limits of the resources the rendering may use. Does not affect the rendering
+         * result itself, and is thus not considered by {@link #equals(Object)}.
+         */
+        public final RenderBudget budget;
+        /**
+         * The cache to look up and store rendering results in, or <code>null</code> to always
+         * render. Does not affect the rendering result itself, and is thus not considered by
+         * {@link #equals(Object)}.
+         */
+        @Nullable
+        public final RenderCache cache;
+
+        /**
+         * All instances that only differ from this one in their outside precedence. Shared
+         * between all of them, so that changing the precedence back and forth while rendering
+         * does not allocate new options.
+         */
+        private final PrecedenceVariants variants;
+        /**
+         * Cached hash code, or 0 if not yet computed.
+         */
+        private int hash = 0;
 
         /**
-         * Creates a new render options object.
+         * Creates a new render options object which does not abbreviate integers, without
+         * render budget and without render cache. Use {@link #setMaxDigits(int)},
+         * {@link #setBudget(RenderBudget)} and {@link #setCache(RenderCache)} to set those.
          */
         public RenderOptions(int precision, DecimalMode decimalMode, boolean scientific, int smallFractionsSizeLimit, Bracket matrixBrackets, CharacterSet charset, boolean autoParenthesis, int outsidePrecedence, SpaceMode spaceMode, TranspositionStyle transpositionStyle) {
+            this(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, Integer.MAX_VALUE, RenderBudget.UNLIMITED, null);
+        }
+
+        /**
+         * Creates a new render options object with all options.
+         */
+        RenderOptions(int precision, DecimalMode decimalMode, boolean scientific, int smallFractionsSizeLimit, Bracket matrixBrackets, CharacterSet charset, boolean autoParenthesis, int outsidePrecedence, SpaceMode spaceMode, TranspositionStyle transpositionStyle, int maxDigits, RenderBudget budget, @Nullable RenderCache cache) {
             this.precision = Arguments.checkRange(precision, 1, null);
             this.decimalMode = Arguments.checkNull(decimalMode, "decimalMode");
             this.scientific = scientific;
@@ -786,6 +1109,31 @@ public interface RenderableExpression {
             this.outsidePrecedence = outsidePrecedence;
             this.spaceMode = Arguments.checkNull(spaceMode, "spaceMode");
             this.transpositionStyle = Arguments.checkNull(transpositionStyle, "transpositionStyle");
+            this.maxDigits = Arguments.checkRange(maxDigits, 8, null);
+            this.budget = Arguments.checkNull(budget, "budget");
+            this.cache = cache;
+            this.variants = new PrecedenceVariants(this);
+        }
+
+        /**
+         * Creates a copy of the given options with a different outside precedence, without
+         * validating the (already validated) other values again.
+         */
+        private RenderOptions(RenderOptions base, int outsidePrecedence) {
+            this.precision = base.precision;
+            this.decimalMode = base.decimalMode;
+            this.scientific = base.scientific;
+            this.smallFractionsSizeLimit = base.smallFractionsSizeLimit;
+            this.matrixBrackets = base.matrixBrackets;
+            this.charset = base.charset;
+            this.autoParenthesis = base.autoParenthesis;
+            this.outsidePrecedence = outsidePrecedence;
+            this.spaceMode = base.spaceMode;
+            this.transpositionStyle = base.transpositionStyle;
+            this.maxDigits = base.maxDigits;
+            this.budget = base.budget;
+            this.cache = base.cache;
+            this.variants = base.variants;
         }
 
         @Override
@@ -801,6 +1149,9 @@ public interface RenderableExpression {
                     ", outsidePrecedence=" + outsidePrecedence +
                     ", spaceMode=" + spaceMode +
                     ", transpositionStyle=" + transpositionStyle +
+                    ", maxDigits=" + maxDigits +
+                    ", budget=" + budget +
+                    ", cache=" + cache +
                     '}';
         }
 
@@ -814,55 +1165,116 @@ public interface RenderableExpression {
                     && decimalMode == that.decimalMode
                     && smallFractionsSizeLimit == that.smallFractionsSizeLimit
                     && matrixBrackets == that.matrixBrackets
+                    && charset.equals(that.charset)
                     && autoParenthesis == that.autoParenthesis
                     && outsidePrecedence == that.outsidePrecedence
                     && spaceMode == that.spaceMode
-                    && transpositionStyle == that.transpositionStyle;
+                    && transpositionStyle == that.transpositionStyle
+                    && maxDigits == that.maxDigits;
         }
 
         @Override
         public int hashCode() {
-            return Objects.hash(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            int hash = this.hash;
+            if(hash == 0)
+                this.hash = hash = Objects.hash(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits);
+            return hash;
         }
 
         public RenderOptions setPrecision(int precision) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setDecimalMode(DecimalMode decimalMode) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setScientific(boolean scientific) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setSmallFractionsSizeLimit(int smallFractionsSizeLimit) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setMatrixBrackets(Bracket matrixBrackets) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setCharset(CharacterSet charset) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setAutoParenthesis(boolean autoParenthesis) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setOutsidePrecedence(int outsidePrecedence) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            if(outsidePrecedence == this.outsidePrecedence) return this;
+            return variants.get(this, outsidePrecedence);
         }
 
         public RenderOptions setSpaceMode(SpaceMode spaceMode) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
         }
 
         public RenderOptions setTranspositionStyle(TranspositionStyle transpositionStyle) {
-            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle);
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
+        }
+
+        public RenderOptions setMaxDigits(int maxDigits) {
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
+        }
+
+        public RenderOptions setBudget(RenderBudget budget) {
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
+        }
+
+        public RenderOptions setCache(@Nullable RenderCache cache) {
+            return new RenderOptions(precision, decimalMode, scientific, smallFractionsSizeLimit, matrixBrackets, charset, autoParenthesis, outsidePrecedence, spaceMode, transpositionStyle, maxDigits, budget, cache);
+        }
+
+        /**
+         * Copy-on-write collection of render options that only differ in their outside precedence.
+         * There is usually only a handful of different precedences in use, so a linear search
+         * is sufficient and lookups don't require any locking.
+         */
+        private static final class PrecedenceVariants {
+
+            /**
+             * Maximum number of cached variants, to bound the memory usage if arbitrary
+             * precedences are used.
+             */
+            private static final int MAX_SIZE = 32;
+
+            private volatile RenderOptions[] variants;
+
+            PrecedenceVariants(RenderOptions options) {
+                variants = new RenderOptions[] { options };
+            }
+
+            RenderOptions get(RenderOptions base, int outsidePrecedence) {
+                RenderOptions variant = find(variants, outsidePrecedence);
+                if(variant != null) return variant;
+                synchronized(this) {
+                    RenderOptions[] variants = this.variants;
+                    if((variant = find(variants, outsidePrecedence)) != null)
+                        return variant;
+                    variant = new RenderOptions(base, outsidePrecedence);
+                    if(variants.length < MAX_SIZE) {
+                        variants = Arrays.copyOf(variants, variants.length + 1);
+                        variants[variants.length - 1] = variant;
+                        this.variants = variants;
+                    }
+                    return variant;
+                }
+            }
+
+            private static RenderOptions find(RenderOptions[] variants, int outsidePrecedence) {
+                for(RenderOptions variant : variants)
+                    if(variant.outsidePrecedence == outsidePrecedence) return variant;
+                return null;
+            }
         }
 
         /**
@@ -916,6 +1328,21 @@ public interface RenderableExpression {
         }
     }
 
+    /**
+     * Supplies the cells of a grid on demand.
+     */
+    @FunctionalInterface
+    interface CellSupplier {
+        /**
+         * Returns the cell at the given position.
+         *
+         * @param row The row of the cell, starting at 0
+         * @param column The column of the cell, starting at 0
+         * @return The cell at that position
+         */
+        RenderableExpression get(int row, int column);
+    }
+
     /**
      * Determines how the operator aligns with its operand(s).
      */
@@ -0,0 +1,697 @@
+package com.github.rccookie.math.rendering;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.github.rccookie.math.rendering.RenderableExpression.RenderOptions;
+import com.github.rccookie.xml.Node;
+
+/**
+ * Common logic around the rendering of every expression, independent of the render mode.
+ * Every implementation of {@link RenderableExpression#render(RenderMode, RenderOptions)}
+ * passes through here.
+ *
+ * <p>Rendering recurses into the subexpressions, thus rendering a deeply nested expression
+ * directly would overflow the stack. Instead, the number of nested render calls is limited.
+ * A subexpression which would exceed that limit is deferred: its parent is abandoned and
+ * an explicit stack of pending render jobs is used to render the subexpression first. Once
+ * rendered, the parent is rendered again, now using the already rendered result. Equal
+ * subexpressions rendered afterwards use that result as well, like a cache hit.</p>
+ *
+ * <p>While {@link RenderMetrics} are set or {@link RenderEvents} are enabled by a flight
+ * recording, every render call which is not answered by the cache is measured, and every
+ * call answered by the cache or by the result of an equal deferred subexpression is
+ * reported as a cache hit. Render calls which throw are not recorded. Otherwise, the
+ * overhead is a volatile read per call. Whether events are enabled is checked once when a
+ * rendering starts, and applies to all of its render calls.</p>
+ *
+ * <p>The {@link RenderBudget} of the render options is checked before each render call, and
+ * the output size after it, unless the budget is unlimited. This includes render calls which
+ * are answered by the cache.</p>
+ *
+ * <p>If the render options have a {@link RenderCache}, rendering results are looked up before
+ * each render call and stored after it. Output written directly into a {@link CharSequence}
+ * or a {@link MarkupWriter} writing into one is captured and stored as well.</p>
+ */
+final class Renderer {
+
+    /**
+     * The maximum number of nested render calls on the stack.
+     */
+    static final int MAX_DEPTH = 256;
+
+    private static final ThreadLocal<Context> CONTEXT = ThreadLocal.withInitial(Context::new);
+
+    private static volatile RenderMetrics metrics = null;
+    /**
+     * Whether {@link RenderEvents} can be used, which requires the <code>jdk.jfr</code> module.
+     */
+    private static final boolean EVENTS = eventsAvailable();
+
+    private Renderer() { throw new UnsupportedOperationException(); }
+
+    private static boolean eventsAvailable() {
+        try {
+            RenderEvents.isEnabled();
+            return true;
+        } catch(LinkageError e) {
+            return false;
+        }
+    }
+
+    static RenderMetrics getMetrics() {
+        return metrics;
+    }
+
+    static void setMetrics(RenderMetrics metrics) {
+        Renderer.metrics = metrics;
+    }
+
+    /**
+     * Returns the previously rendered result of the given expression, or <code>null</code>
+     * if it has to be rendered, in which case the result has to be passed to {@link #store(RenderableExpression, RenderMode, RenderOptions, Object)}.
+     * If no expression is currently being rendered on this thread, the given expression is
+     * rendered completely and the result is returned.
+     */
+    static <T> T lookup(RenderableExpression expression, RenderMode<T> mode, RenderOptions options) {
+        Context context = CONTEXT.get();
+        if(!context.running)
+            return context.run(new Job(expression, mode, options, context.level));
+        if(options.budget != RenderBudget.UNLIMITED)
+            options.budget.check(context.level, context.start);
+
+        RenderCache cache = options.cache;
+        T result = cache != null ? cache.get(expression, mode, options) : null;
+        if(result != null) {
+            if(options.budget.maxOutputSize != Integer.MAX_VALUE)
+                options.budget.checkOutputSize(size(result));
+            cacheHit(context, expression, mode, result);
+            return result;
+        }
+
+        if(!context.rendered.isEmpty() && (result = context.rendered(new Job(expression, mode, options, context.level))) != null)
+            return result;
+        if(context.depth >= MAX_DEPTH)
+            throw new Deferred(new Job(expression, mode, options, context.level));
+        context.depth++;
+        RenderMetrics metrics = Renderer.metrics;
+        if(metrics != null || context.events)
+            context.measure(metrics, expression, mode, null);
+        context.level++;
+        return null;
+    }
+
+    /**
+     * Records the rendered result of the given expression and returns it.
+     */
+    static <T> T store(RenderableExpression expression, RenderMode<T> mode, RenderOptions options, T result) {
+        if(options.budget.maxOutputSize != Integer.MAX_VALUE)
+            options.budget.checkOutputSize(size(result));
+        Context context = CONTEXT.get();
+        context.level--;
+        if(context.measuring())
+            context.record(result);
+        context.depth--;
+        RenderCache cache = options.cache;
+        return cache != null ? cache.put(expression, mode, options, result, context.level == 0) : result;
+    }
+
+    /**
+     * Writes the cached rendering result of the given expression into the given appendable
+     * or {@link MathMLWriter}, and returns whether it was cached.
+     */
+    static boolean writeCached(RenderableExpression expression, RenderMode<?> mode, Object out, RenderOptions options) throws IOException {
+        Context context = CONTEXT.get();
+        context.begin();
+        if(options.budget != RenderBudget.UNLIMITED)
+            options.budget.check(context.level, context.start);
+        Object result = options.cache.get(expression, cacheMode(mode, out), options);
+        if(result == null)
+            return false;
+        if(out instanceof MarkupWriter)
+            ((MarkupWriter) out).markup((String) result);
+        else if(out instanceof MathMLWriter)
+            ((MathMLWriter) out).node((Node) result);
+        else ((Appendable) out).append((String) result);
+        if(options.budget.maxOutputSize != Integer.MAX_VALUE)
+            options.budget.checkOutputSize(position(out));
+        cacheHit(context, expression, mode, result);
+        return true;
+    }
+
+    /**
+     * Reports a render call answered by the cache with the given result.
+     */
+    private static void cacheHit(Context context, RenderableExpression expression, RenderMode<?> mode, Object result) {
+        RenderMetrics metrics = Renderer.metrics;
+        if(metrics != null)
+            metrics.recordCacheHit(expression.getClass(), mode, size(result));
+        if(context.events)
+            RenderEvents.cacheHit(expression, mode, context.level, result);
+    }
+
+    /**
+     * Enters a render call which writes its output directly, without returning it. If this
+     * returns <code>false</code>, the expression is nested too deep, and has to be rendered
+     * using {@link RenderableExpression#render(RenderMode, RenderOptions)} instead. Otherwise,
+     * {@link #exit(boolean)} has to be called afterwards.
+     *
+     * @param out The appendable or {@link MathMLWriter} written into
+     */
+    static boolean enter(RenderableExpression expression, RenderMode<?> mode, Object out, RenderOptions options) {
+        Context context = CONTEXT.get();
+        context.begin();
+        if(context.depth >= MAX_DEPTH)
+            return false;
+        if(options.budget != RenderBudget.UNLIMITED) {
+            options.budget.check(context.level, context.start);
+            options.budget.checkOutputSize(position(out));
+        }
+        context.depth++;
+        RenderMetrics metrics = Renderer.metrics;
+        if(metrics != null || context.events)
+            context.measure(metrics, expression, mode, out);
+        if(options.cache != null)
+            context.capture(expression, mode, out, options);
+        context.level++;
+        return true;
+    }
+
+    /**
+     * Exits a render call entered using {@link #enter(RenderableExpression, RenderMode, Object, RenderOptions)}.
+     *
+     * @param completed Whether the render call completed normally, rather than by throwing
+     */
+    static void exit(boolean completed) {
+        Context context = CONTEXT.get();
+        context.level--;
+        if(context.capturing())
+            context.store(completed);
+        if(!completed)
+            context.discard();
+        else if(context.measuring())
+            context.record(null);
+        context.depth--;
+    }
+
+    /**
+     * Returns the state of the current render call on this thread, which tasks rendering
+     * parts of it on other threads continue from.
+     */
+    static Origin origin() {
+        Context context = CONTEXT.get();
+        return new Origin(context.level, context.start, context.events);
+    }
+
+    /**
+     * Runs the given rendering task independent of the expression currently being rendered
+     * on this thread, if any. Rendering work stolen by a thread of a fork-join pool while it
+     * waits for other tasks has to be run this way, as the task cannot be deferred as part of
+     * the job the thread is currently rendering.
+     *
+     * @param origin The {@link #origin()} of the render call the task belongs to
+     */
+    static void detached(Origin origin, Runnable task) {
+        Context outer = CONTEXT.get();
+        Context context = new Context();
+        context.level = origin.level;
+        context.start = origin.start;
+        context.events = origin.events;
+        CONTEXT.set(context);
+        try {
+            task.run();
+        } finally {
+            CONTEXT.set(outer);
+        }
+    }
+
+    /**
+     * Renders the given expression using {@link RenderableExpression#render(RenderMode, RenderOptions)},
+     * and writes the result into the given writer. Markup written as text is rendered as text
+     * right away, rather than serializing the nodes afterwards.
+     */
+    static void renderCompletely(RenderableExpression expression, RenderMode<Node> mode, MathMLWriter out, RenderOptions options) throws IOException {
+        if(out instanceof MarkupWriter && mode instanceof MathMLRenderMode)
+            ((MarkupWriter) out).markup(expression.render(MarkupWriter.markupMode((MathMLRenderMode) mode), options));
+        else out.node(expression.render(mode, options));
+    }
+
+
+    /**
+     * The rendering state of a thread.
+     */
+    private static final class Context {
+
+        /**
+         * Whether render jobs are currently being processed.
+         */
+        boolean running = false;
+        /**
+         * The number of nested render calls of the current job.
+         */
+        int depth = 0;
+        /**
+         * The number of render calls the current render call is nested in, including those
+         * of other jobs.
+         */
+        int level = 0;
+        /**
+         * The time the outermost render call started, in terms of {@link System#nanoTime()}.
+         */
+        long start;
+        /**
+         * Whether {@link RenderEvents} are enabled for the current rendering.
+         */
+        boolean events;
+        /**
+         * Results of deferred jobs, until the job that deferred them has been rendered.
+         */
+        final Map<Job, Rendered> rendered = new HashMap<>();
+        /**
+         * The job currently being rendered, and the number of times a job was started.
+         */
+        Job job;
+        int runs = 0;
+        /**
+         * The render calls currently being measured, innermost last. Frames below
+         * <code>frameBase</code> belong to render calls outside the current job.
+         */
+        Frame[] frames = new Frame[0];
+        int frameCount = 0, frameBase = 0;
+        /**
+         * The render calls whose output is currently being captured to be cached, innermost
+         * last. Always popped when exiting, thus not affected by deferred jobs.
+         */
+        Capture[] captures = new Capture[0];
+        int captureCount = 0;
+
+        /**
+         * Starts the rendering, if no render call is in progress on this thread.
+         */
+        void begin() {
+            if(level == 0 && !running) {
+                start = System.nanoTime();
+                events = EVENTS && RenderEvents.isEnabled();
+            }
+        }
+
+        void measure(RenderMetrics metrics, RenderableExpression expression, RenderMode<?> mode, Object out) {
+            Object event = events ? RenderEvents.begin(level) : null;
+            if(metrics == null && event == null)
+                return;
+            if(frameCount == frames.length) {
+                frames = Arrays.copyOf(frames, Math.max(16, 2 * frameCount));
+                for(int i=frameCount; i<frames.length; i++)
+                    frames[i] = new Frame();
+            }
+            Frame frame = frames[frameCount++];
+            frame.metrics = metrics;
+            frame.type = expression.getClass();
+            frame.mode = mode;
+            frame.event = event;
+            frame.depth = depth;
+            frame.level = level;
+            frame.out = out;
+            frame.position = out != null ? position(out) : -1;
+            frame.bytes = Allocations.current();
+            frame.nanos = System.nanoTime();
+        }
+
+        /**
+         * Starts capturing the output of the current render call, if the output can be read
+         * back from the given appendable or writer.
+         */
+        void capture(RenderableExpression expression, RenderMode<?> mode, Object out, RenderOptions options) {
+            long start;
+            boolean inStartTag = false;
+            if(out instanceof MarkupWriter) {
+                start = ((MarkupWriter) out).position();
+                inStartTag = ((MarkupWriter) out).inStartTag();
+            }
+            else start = out instanceof CharSequence ? ((CharSequence) out).length() : -1;
+            if(start < 0)
+                return;
+            if(captureCount == captures.length) {
+                captures = Arrays.copyOf(captures, Math.max(16, 2 * captureCount));
+                for(int i=captureCount; i<captures.length; i++)
+                    captures[i] = new Capture();
+            }
+            Capture capture = captures[captureCount++];
+            capture.expression = expression;
+            capture.mode = cacheMode(mode, out);
+            capture.options = options;
+            capture.out = out;
+            capture.start = start;
+            capture.inStartTag = inStartTag;
+            capture.level = level;
+        }
+
+        /**
+         * Returns whether the output of the current render call is being captured.
+         */
+        boolean capturing() {
+            return captureCount != 0 && captures[captureCount - 1].level == level;
+        }
+
+        /**
+         * Stops capturing the output of the current render call, and caches it if the render
+         * call completed.
+         */
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        void store(boolean completed) {
+            Capture capture = captures[--captureCount];
+            if(completed && (level == 0 || position(capture.out) - capture.start >= capture.options.cache.minResultSize())) {
+                String output;
+                if(capture.out instanceof MarkupWriter)
+                    output = ((MarkupWriter) capture.out).writtenSince(capture.start, capture.inStartTag);
+                else output = ((CharSequence) capture.out).subSequence((int) capture.start, ((CharSequence) capture.out).length()).toString();
+                capture.options.cache.put(capture.expression, (RenderMode) capture.mode, capture.options, output, level == 0);
+            }
+            capture.expression = null;
+            capture.options = null;
+            capture.out = null;
+        }
+
+        /**
+         * Returns whether the current render call is being measured.
+         */
+        boolean measuring() {
+            return frameCount > frameBase && frames[frameCount - 1].depth == depth;
+        }
+
+        /**
+         * Records the current render call, which returned the given result or wrote its
+         * output if <code>null</code>.
+         */
+        void record(Object result) {
+            long nanos = System.nanoTime();
+            long bytes = Allocations.current();
+            Frame frame = frames[--frameCount];
+            long size;
+            if(result != null)
+                size = size(result);
+            else {
+                long position = position(frame.out);
+                size = position >= 0 && frame.position >= 0 ? position - frame.position : -1;
+            }
+            if(frame.metrics != null)
+                frame.metrics.record(frame.type, frame.mode, nanos - frame.nanos, bytes >= 0 && frame.bytes >= 0 ? bytes - frame.bytes : -1, size);
+            if(frame.event != null)
+                RenderEvents.end(frame.event, frame.type, frame.mode, frame.level, result, size, false);
+            frame.metrics = null;
+            frame.event = null;
+            frame.out = null;
+        }
+
+        /**
+         * Stops measuring the current render call, which threw, and the calls nested in it
+         * which threw before returning, without recording them.
+         */
+        void discard() {
+            while(frameCount > frameBase && frames[frameCount - 1].depth >= depth) {
+                Frame frame = frames[--frameCount];
+                frame.metrics = null;
+                frame.event = null;
+                frame.out = null;
+            }
+        }
+
+        /**
+         * Returns the result of the given job if it was deferred and has been rendered, or
+         * <code>null</code>. The result is reported as a cache hit, unless it is handed to
+         * the call which deferred it, which was measured as part of the deferred job.
+         */
+        @SuppressWarnings("unchecked")
+        <T> T rendered(Job job) {
+            Rendered rendered = this.rendered.get(job);
+            if(rendered == null)
+                return null;
+            Object result = rendered.result instanceof Node ? copy((Node) rendered.result) : rendered.result;
+            if(rendered.owner == this.job && rendered.run != runs)
+                rendered.run = runs;
+            else cacheHit(this, job.expression, job.mode, result);
+            return (T) result;
+        }
+
+        @SuppressWarnings("unchecked")
+        <T> T run(Job root) {
+            int outerDepth = depth, outerLevel = level, outerFrameBase = frameBase, outerFrameCount = frameCount;
+            Deque<Job> pending = new ArrayDeque<>();
+            begin();
+            running = true;
+            frameBase = frameCount;
+            try {
+                job = root;
+                while(true) {
+                    runs++;
+                    depth = 0;
+                    level = job.level;
+                    frameCount = frameBase;
+                    try {
+                        Object result = job.expression.render(job.mode, job.options);
+                        if(job == root)
+                            return (T) result;
+                        Job owner = pending.pop();
+                        rendered.put(job, new Rendered(result, owner));
+                        job = owner;
+                    } catch(Deferred deferred) {
+                        pending.push(job);
+                        job = deferred.job;
+                    }
+                }
+            } finally {
+                running = false;
+                depth = outerDepth;
+                level = outerLevel;
+                frameBase = outerFrameBase;
+                frameCount = outerFrameCount;
+                job = null;
+                rendered.clear();
+            }
+        }
+    }
+
+    /**
+     * The state of a render call which is passed on to tasks rendering parts of it on other
+     * threads.
+     */
+    static final class Origin {
+        final int level;
+        final long start;
+        final boolean events;
+
+        private Origin(int level, long start, boolean events) {
+            this.level = level;
+            this.start = start;
+            this.events = events;
+        }
+    }
+
+    /**
+     * A render call being measured.
+     */
+    private static final class Frame {
+        RenderMetrics metrics;
+        /**
+         * The flight recorder event, typed as object to not depend on <code>jdk.jfr</code>.
+         */
+        Object event;
+        Class<? extends RenderableExpression> type;
+        RenderMode<?> mode;
+        int depth, level;
+        Object out;
+        long position, bytes, nanos;
+    }
+
+    /**
+     * A render call whose output is being captured.
+     */
+    private static final class Capture {
+        RenderableExpression expression;
+        /**
+         * The render mode of the captured output, see {@link #cacheMode(RenderMode, Object)}.
+         */
+        RenderMode<?> mode;
+        RenderOptions options;
+        Object out;
+        long start;
+        boolean inStartTag;
+        int level;
+    }
+
+    /**
+     * Returns the render mode under which output written into the given appendable or writer
+     * is cached. Markup written as text is cached as text.
+     */
+    private static RenderMode<?> cacheMode(RenderMode<?> mode, Object out) {
+        return out instanceof MarkupWriter && mode instanceof MathMLRenderMode ? MarkupWriter.markupMode((MathMLRenderMode) mode) : mode;
+    }
+
+    /**
+     * Returns the size of the given rendering result, as reported to {@link RenderMetrics}.
+     */
+    static long size(Object result) {
+        if(result instanceof CharSequence)
+            return ((CharSequence) result).length();
+        if(result instanceof AsciiArt)
+            return (long) ((AsciiArt) result).width() * ((AsciiArt) result).height();
+        if(!(result instanceof Node))
+            return -1;
+        long count = 0;
+        Deque<Node> nodes = new ArrayDeque<>();
+        nodes.push((Node) result);
+        while(!nodes.isEmpty()) {
+            count++;
+            nodes.pop().children.forEach(nodes::push);
+        }
+        return count;
+    }
+
+    /**
+     * Returns a deep copy of the given node. Unlike {@link Node#clone()}, elements are copied
+     * without recursion, so that the results of arbitrarily deeply nested expressions can
+     * be copied. Nodes of other types than {@link Node} itself, like text nodes or nodes
+     * passed to {@link MathMLWriter#node(Node)}, are copied using {@link Node#clone()}.
+     */
+    static Node copy(Node node) {
+        if(node.getClass() != Node.class)
+            return node.clone();
+        Node copy = new Node(node.tag);
+        Deque<Node> nodes = new ArrayDeque<>();
+        nodes.push(node);
+        nodes.push(copy);
+        while(!nodes.isEmpty()) {
+            Node target = nodes.pop(), source = nodes.pop();
+            target.attributes.putAll(source.attributes);
+            for(Node child : source.children) {
+                if(child.getClass() != Node.class)
+                    target.children.add(child.clone());
+                else {
+                    Node childCopy = new Node(child.tag);
+                    target.children.add(childCopy);
+                    nodes.push(child);
+                    nodes.push(childCopy);
+                }
+            }
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the amount of output written into the given appendable or writer so far,
+     * or -1 if unknown.
+     */
+    private static long position(Object out) {
+        if(out instanceof CharSequence)
+            return ((CharSequence) out).length();
+        if(out instanceof MarkupWriter)
+            return ((MarkupWriter) out).position();
+        if(out instanceof NodeWriter)
+            return ((NodeWriter) out).count();
+        return -1;
+    }
+
+    /**
+     * Measures the allocations of the current thread, if supported by the JVM. Initialized
+     * only once render calls are measured.
+     */
+    private static final class Allocations {
+
+        private static final com.sun.management.ThreadMXBean THREADS = threads();
+
+        private static com.sun.management.ThreadMXBean threads() {
+            try {
+                if(!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean))
+                    return null;
+                com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+                return threads.isThreadAllocatedMemorySupported() ? threads : null;
+            } catch(LinkageError e) {
+                return null; // jdk.management not present
+            }
+        }
+
+        /**
+         * Returns the number of bytes allocated by the current thread so far, or -1 if
+         * not supported.
+         */
+        static long current() {
+            return THREADS != null ? THREADS.getThreadAllocatedBytes(Thread.currentThread().getId()) : -1;
+        }
+    }
+
+    /**
+     * A render call of an expression. Expressions are compared structurally, as some are
+     * created anew while rendering their parent.
+     */
+    private static final class Job {
+
+        final RenderableExpression expression;
+        final RenderMode<?> mode;
+        final RenderOptions options;
+        /**
+         * The {@link Context#level} of the render call, not part of the identity of the job.
+         */
+        final int level;
+        final int hash;
+
+        Job(RenderableExpression expression, RenderMode<?> mode, RenderOptions options, int level) {
+            this.expression = expression;
+            this.mode = mode;
+            this.options = options;
+            this.level = level;
+            hash = 31 * (31 * expression.hashCode() + System.identityHashCode(mode)) + options.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if(this == o) return true;
+            if(!(o instanceof Job)) return false;
+            Job job = (Job) o;
+            return hash == job.hash && mode == job.mode && expression.equals(job.expression) && options.equals(job.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The result of a deferred job.
+     */
+    private static final class Rendered {
+
+        final Object result;
+        /**
+         * The job which deferred the job.
+         */
+        final Job owner;
+        /**
+         * The run of the owner in which the result was last handed to the deferring call.
+         */
+        int run = -1;
+
+        Rendered(Object result, Job owner) {
+            this.result = result;
+            this.owner = owner;
+        }
+    }
+
+    /**
+     * Thrown to abandon the current job, when a subexpression has to be rendered first.
+     */
+    private static final class Deferred extends RuntimeException {
+
+        final Job job;
+
+        Deferred(Job job) {
+            super(null, null, false, false);
+            this.job = job;
+        }
+    }
+}
@@ -1,7 +1,9 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
-import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -11,10 +13,15 @@ final class Root implements RenderableExpression {
 
     final RenderableExpression degree;
     final RenderableExpression value;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Root(RenderableExpression degree, RenderableExpression value) {
         this.degree = Arguments.checkNull(degree, "degree");
         this.value = Arguments.checkNull(value, "value");
+        hash = Objects.hash(getClass(), this.degree, this.value);
     }
 
     @Override
@@ -22,6 +29,21 @@ final class Root implements RenderableExpression {
         return "root("+degree+", "+value+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Root that = (Root) o;
+        return hash == that.hash
+                && Structural.equal(degree, that.degree)
+                && Structural.equal(value, that.value);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.ROOT;
@@ -54,15 +76,14 @@ final class Root implements RenderableExpression {
         AsciiArt degree = this.degree.render(ASCII_ART, options), value = this.value.render(ASCII_ART, options);
 
         AsciiArt shape = createRootShape(value.height(), leftDiag, rightDiag);
-        AsciiArt root = shape.appendTop(value);
+        AsciiLayout root = new AsciiLayout(shape).appendTop(value);
         if(shape.height() >= 3)
-            root = root.appendTop(new AsciiArt(shape.height() / 3, i -> vert+""));
-        root = root.draw(new AsciiArt("_".repeat(value.width())), new int2(shape.width(), -1));
+            root.appendTop(new AsciiArt(shape.height() / 3, i -> vert+""));
+        root.fill('_', shape.width(), -1, value.width());
 
-        if(value.width() == 0) return root;
+        if(value.width() == 0) return root.toAsciiArt();
         int barHeight = barHeight(shape.height());
-        int2 pos = new int2(Math.min(0, 2*barHeight-1 - degree.width()), root.height() - barHeight - 1 - degree.height()+1);
-        return root.draw(degree, pos);
+        return root.draw(degree, Math.min(0, 2*barHeight-1 - degree.width()), root.height() - barHeight - 1 - degree.height()+1).toAsciiArt();
     }
 
     private static AsciiArt createRootShape(int height, String leftDiag, String rightDiag) {
@@ -81,22 +102,37 @@ final class Root implements RenderableExpression {
 
     @Override
     public String renderLatex(RenderOptions options) {
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(Precedence.MIN);
-        return "\\sqrt["+degree.render(LATEX, options)+"]{"+value.render(LATEX, options)+"}";
+        out.append("\\sqrt[");
+        degree.render(LATEX, out, options);
+        out.append("]{");
+        value.render(LATEX, out, options);
+        out.append("}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
         options = options.setOutsidePrecedence(Precedence.MIN);
         Node degree = this.degree.render(MATH_ML_NODE, options);
-        Node root;
-        if(degree.text().isEmpty())
-            root = new Node("msqrt");
+        if(degree.text().isEmpty()) {
+            out.startElement("msqrt");
+            value.render(MATH_ML_NODE, out, options);
+        }
         else {
-            root = new Node("mroot");
-            root.children.add(degree);
+            out.startElement("mroot");
+            value.render(MATH_ML_NODE, out, options);
+            out.node(degree);
         }
-        root.children.add(0, value.renderMathMLNode(options));
-        return root;
+        out.endElement();
     }
 }
@@ -1,5 +1,8 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -13,6 +16,10 @@ final class SimpleInfixOperation implements RenderableExpression {
     final int precedence;
     final boolean associative;
     final OperatorAlignment alignment;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     SimpleInfixOperation(RenderableExpression a, RenderableExpression b, RenderableExpression symbol, int precedence, boolean associative, OperatorAlignment alignment) {
         this.a = Arguments.checkNull(a, "a");
@@ -21,6 +28,7 @@ final class SimpleInfixOperation implements RenderableExpression {
         this.precedence = precedence;
         this.associative = associative;
         this.alignment = Arguments.checkNull(alignment, "alignment");
+        hash = Objects.hash(getClass(), this.a, this.b, this.symbol, this.precedence, this.associative, this.alignment);
     }
 
     @Override
@@ -28,6 +36,25 @@ final class SimpleInfixOperation implements RenderableExpression {
         return symbol.toString().trim()+"("+a+", "+b+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        SimpleInfixOperation that = (SimpleInfixOperation) o;
+        return hash == that.hash
+                && Structural.equal(a, that.a)
+                && Structural.equal(b, that.b)
+                && Structural.equal(symbol, that.symbol)
+                && precedence == that.precedence
+                && associative == that.associative
+                && alignment == that.alignment;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return precedence;
@@ -35,7 +62,14 @@ final class SimpleInfixOperation implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
-        return a.render(INLINE, leftOptions(options)) + symbol.render(INLINE, options) + b.render(INLINE, rightOptions(options));
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        a.render(INLINE, out, leftOptions(options));
+        symbol.render(INLINE, out, options);
+        b.render(INLINE, out, rightOptions(options));
     }
 
     @Override
@@ -47,23 +81,41 @@ final class SimpleInfixOperation implements RenderableExpression {
         else if(options.spaceMode == RenderOptions.SpaceMode.FORCE) spaces = true;
         else if(a.height() != 1 || b.height() != 1 || (a.width() > 2 && b.width() > 2)) spaces = true;
         else if(a.width() <= 2 && b.width() <= 2) spaces = false;
-        else spaces = (a.width() != 1 && b.width() != 1) || a.toString().contains(" ") || b.toString().contains(" ");
+        else spaces = (a.width() != 1 && b.width() != 1) || a.containsBlank() || b.containsBlank();
 
-        AsciiArt art = a;
-        if(spaces) art = art.appendTop(new AsciiArt(" "));
-        art = art.append(symbol, alignment, true);
-        if(spaces) art = art.appendTop(new AsciiArt(" "));
-        return art.appendCenter(b);
+        AsciiLayout art = new AsciiLayout(a);
+        if(spaces) art.appendTop(new AsciiArt(" "));
+        art.append(symbol, alignment, true);
+        if(spaces) art.appendTop(new AsciiArt(" "));
+        return art.appendCenter(b).toAsciiArt();
     }
 
     @Override
     public String renderLatex(RenderOptions options) {
-        return a.render(LATEX, leftOptions(options))+" "+symbol.render(LATEX, options)+" "+b.render(LATEX, rightOptions(options));
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        a.render(LATEX, out, leftOptions(options));
+        out.append(" ");
+        symbol.render(LATEX, out, options);
+        out.append(" ");
+        b.render(LATEX, out, rightOptions(options));
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return Utils.join(a.render(MATH_ML_NODE, leftOptions(options)), symbol.render(MATH_ML_NODE, options), b.render(MATH_ML_NODE, rightOptions(options)));
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mrow");
+        a.render(MATH_ML_NODE, out, leftOptions(options));
+        symbol.render(MATH_ML_NODE, out, options);
+        b.render(MATH_ML_NODE, out, rightOptions(options));
+        out.endElement();
     }
 
 
@@ -1,5 +1,8 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -11,12 +14,17 @@ final class SimplePostfixOperation implements RenderableExpression {
     final RenderableExpression symbol;
     final int precedence;
     final OperatorAlignment alignment;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     SimplePostfixOperation(RenderableExpression value, RenderableExpression symbol, int precedence, OperatorAlignment alignment) {
         this.value = Arguments.checkNull(value, "value");
         this.symbol = symbol;
         this.precedence = precedence;
         this.alignment = Arguments.checkNull(alignment, "alignment");
+        hash = Objects.hash(getClass(), this.value, this.symbol, this.precedence, this.alignment);
     }
 
     @Override
@@ -24,6 +32,23 @@ final class SimplePostfixOperation implements RenderableExpression {
         return "postfix("+symbol.toString().trim()+", "+value+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        SimplePostfixOperation that = (SimplePostfixOperation) o;
+        return hash == that.hash
+                && Structural.equal(value, that.value)
+                && Structural.equal(symbol, that.symbol)
+                && precedence == that.precedence
+                && alignment == that.alignment;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return precedence;
@@ -31,7 +56,13 @@ final class SimplePostfixOperation implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
-        return value.render(INLINE, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1)) + symbol.render(INLINE, options);
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        value.render(INLINE, out, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1));
+        symbol.render(INLINE, out, options);
     }
 
     @Override
@@ -43,11 +74,25 @@ final class SimplePostfixOperation implements RenderableExpression {
 
     @Override
     public String renderLatex(RenderOptions options) {
-        return value.render(LATEX, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1)) + symbol.render(LATEX, options);
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        value.render(LATEX, out, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1));
+        symbol.render(LATEX, out, options);
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return Utils.join(value.render(MATH_ML_NODE, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1)), symbol.render(MATH_ML_NODE, options));
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mrow");
+        value.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1));
+        symbol.render(MATH_ML_NODE, out, options);
+        out.endElement();
     }
 }
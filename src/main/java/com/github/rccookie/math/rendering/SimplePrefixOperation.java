@@ -1,5 +1,8 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
@@ -11,12 +14,17 @@ class SimplePrefixOperation implements RenderableExpression {
     final RenderableExpression symbol;
     final int precedence;
     final OperatorAlignment alignment;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     SimplePrefixOperation(RenderableExpression value, RenderableExpression symbol, int precedence, OperatorAlignment alignment) {
         this.value = Arguments.checkNull(value, "value");
         this.symbol = Arguments.checkNull(symbol, "symbol");
         this.precedence = precedence;
         this.alignment = Arguments.checkNull(alignment, "alignment");
+        hash = Objects.hash(getClass(), this.value, this.symbol, this.precedence, this.alignment);
     }
 
     @Override
@@ -24,6 +32,23 @@ class SimplePrefixOperation implements RenderableExpression {
         return "prefix("+symbol.toString().trim()+", "+value+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        SimplePrefixOperation that = (SimplePrefixOperation) o;
+        return hash == that.hash
+                && Structural.equal(value, that.value)
+                && Structural.equal(symbol, that.symbol)
+                && precedence == that.precedence
+                && alignment == that.alignment;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return precedence;
@@ -31,7 +56,13 @@ class SimplePrefixOperation implements RenderableExpression {
 
     @Override
     public String renderInline(RenderOptions options) {
-        return symbol.render(INLINE, options) + value.render(INLINE, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1));
+        return INLINE.render(this, options);
+    }
+
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        symbol.render(INLINE, out, options);
+        value.render(INLINE, out, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1));
     }
 
     @Override
@@ -42,11 +73,27 @@ class SimplePrefixOperation implements RenderableExpression {
 
     @Override
     public String renderLatex(RenderOptions options) {
-        return symbol.render(LATEX, options)+"{"+value.render(LATEX, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1))+"}";
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        symbol.render(LATEX, out, options);
+        out.append("{");
+        value.render(LATEX, out, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1));
+        out.append("}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return Utils.join(symbol.render(MATH_ML_NODE, options), value.render(MATH_ML_NODE, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1)));
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("mrow");
+        symbol.render(MATH_ML_NODE, out, options);
+        value.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Math.min(precedence, Integer.MAX_VALUE-1) + 1));
+        out.endElement();
     }
 }
@@ -1,9 +1,14 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
+import static com.github.rccookie.math.rendering.RenderMode.*;
+
 final class SpecialLiteral implements RenderableExpression {
 
     public static final RenderableExpression PI = new SpecialLiteral(false, "\u03C0", "pi", "\u03C0", "\\pi");
@@ -21,6 +26,11 @@ final class SpecialLiteral implements RenderableExpression {
     public static final RenderableExpression PRODUCT = new SpecialLiteral(false, "\u03A0", "___\n| |\n| |", "___\n\u2502 \u2502\n\u2502 \u2502", "\\prod", "\u220F");
     public static final RenderableExpression LIMES = new SpecialLiteral(false, "lim", "lim", "lim", "\\lim");
 
+    public static final RenderableExpression LDOTS = new SpecialLiteral(false, "\u2026", "...", "\u2026", "\\ldots");
+    public static final RenderableExpression CDOTS = new SpecialLiteral(false, "\u22EF", "...", "\u22EF", "\\cdots");
+    public static final RenderableExpression VDOTS = new SpecialLiteral(false, "\u22EE", ":", "\u22EE", "\\vdots");
+    public static final RenderableExpression DDOTS = new SpecialLiteral(false, "\u22F1", "\\", "\u22F1", "\\ddots");
+
     public static final RenderableExpression PLUS = new Literal(true, "+");
     public static final RenderableExpression MINUS = new SpecialLiteral(true, "-", "-", "-", "-", "\u2212");
     public static final RenderableExpression MULTIPLY = new SpecialLiteral(true, "\u00B7", "*", "\u00B7", "\\cdot");
@@ -66,6 +76,15 @@ final class SpecialLiteral implements RenderableExpression {
     final AsciiArt unicode;
     final String latex;
     final Node mathML;
+    /**
+     * The text of the ascii arts and the markup, which are compared instead of the ascii
+     * arts and the node themselves. Computed once on construction.
+     */
+    private final String asciiText, unicodeText, mathMLText;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     SpecialLiteral(boolean operator, String inline, String ascii, String unicode, String latex) {
         this(operator, inline, ascii, unicode, latex, unicode);
@@ -81,6 +100,10 @@ final class SpecialLiteral implements RenderableExpression {
         this.unicode = Arguments.checkNull(unicode, "unicode");
         this.latex = Arguments.checkNull(latex, "latex");
         this.mathML = Arguments.checkNull(mathML, "mathML");
+        asciiText = ascii.toString();
+        unicodeText = unicode.toString();
+        mathMLText = mathML.toString();
+        hash = Objects.hash(getClass(), this.inline, asciiText, ascii.center(), unicodeText, unicode.center(), this.latex, mathMLText);
     }
 
     @Override
@@ -88,6 +111,26 @@ final class SpecialLiteral implements RenderableExpression {
         return inline;
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        SpecialLiteral that = (SpecialLiteral) o;
+        return hash == that.hash
+                && inline.equals(that.inline)
+                && latex.equals(that.latex)
+                && ascii.center() == that.ascii.center()
+                && unicode.center() == that.unicode.center()
+                && asciiText.equals(that.asciiText)
+                && unicodeText.equals(that.unicodeText)
+                && mathMLText.equals(that.mathMLText);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.MAX;
@@ -110,6 +153,11 @@ final class SpecialLiteral implements RenderableExpression {
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return mathML.clone();
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.node(mathML.clone());
     }
 }
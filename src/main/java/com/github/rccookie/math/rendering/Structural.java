@@ -0,0 +1,100 @@
+package com.github.rccookie.math.rendering;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Compares subexpressions structurally, in bounded stack space. The <code>equals()</code>
+ * method of every expression compares its subexpressions using this class, which limits the
+ * number of nested comparisons. Comparisons that would exceed that limit are deferred, and
+ * performed once the outermost comparison in progress on this thread has returned to here.
+ * This is sound as an expression equals another only if all of its comparisons succeed.
+ */
+final class Structural {
+
+    /**
+     * The maximum number of nested comparisons on the stack.
+     */
+    private static final int MAX_DEPTH = 256;
+
+    private static final ThreadLocal<Comparison> COMPARISON = ThreadLocal.withInitial(Comparison::new);
+
+    private Structural() { throw new UnsupportedOperationException(); }
+
+    /**
+     * Returns whether the given subexpressions are structurally equal, or, if called too deep
+     * within other comparisons, defers the comparison and returns <code>true</code>.
+     */
+    static boolean equal(@Nullable RenderableExpression a, @Nullable RenderableExpression b) {
+        if(a == b) return true;
+        if(a == null || b == null || a.hashCode() != b.hashCode()) return false;
+
+        Comparison comparison = COMPARISON.get();
+        if(comparison.depth != 0) {
+            if(comparison.depth >= MAX_DEPTH) {
+                comparison.pending.push(a);
+                comparison.pending.push(b);
+                return true;
+            }
+            comparison.depth++;
+            try {
+                return a.equals(b);
+            } finally {
+                comparison.depth--;
+            }
+        }
+
+        comparison.depth = 1;
+        try {
+            boolean equal = a.equals(b);
+            while(equal && !comparison.pending.isEmpty()) {
+                b = comparison.pending.pop();
+                a = comparison.pending.pop();
+                equal = a.equals(b);
+            }
+            return equal;
+        } finally {
+            comparison.depth = 0;
+            comparison.pending.clear();
+        }
+    }
+
+    /**
+     * Returns whether the given arrays have the same length and structurally equal elements.
+     */
+    static boolean equal(RenderableExpression[] a, RenderableExpression[] b) {
+        if(a == b) return true;
+        if(a.length != b.length) return false;
+        for(int i=0; i<a.length; i++)
+            if(!equal(a[i], b[i])) return false;
+        return true;
+    }
+
+    /**
+     * Returns whether the given grids have the same dimensions and structurally equal elements.
+     */
+    static boolean equal(RenderableExpression[][] a, RenderableExpression[][] b) {
+        if(a == b) return true;
+        if(a.length != b.length) return false;
+        for(int i=0; i<a.length; i++)
+            if(!equal(a[i], b[i])) return false;
+        return true;
+    }
+
+
+    /**
+     * The comparison state of a thread.
+     */
+    private static final class Comparison {
+        /**
+         * The number of nested comparisons, or 0 if no comparison is in progress.
+         */
+        int depth = 0;
+        /**
+         * Deferred comparisons, as pairs of expressions.
+         */
+        final Deque<RenderableExpression> pending = new ArrayDeque<>();
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.primitive.int2;
 import com.github.rccookie.util.Arguments;
@@ -10,10 +13,15 @@ import static com.github.rccookie.math.rendering.RenderMode.*;
 final class Subscript implements RenderableExpression {
 
     final RenderableExpression a, b;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Subscript(RenderableExpression a, RenderableExpression b) {
         this.a = Arguments.checkNull(a, "a");
         this.b = Arguments.checkNull(b, "b");
+        hash = Objects.hash(getClass(), this.a, this.b);
     }
 
     @Override
@@ -21,6 +29,21 @@ final class Subscript implements RenderableExpression {
         return "sub("+a+", "+b+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Subscript that = (Subscript) o;
+        return hash == that.hash
+                && Structural.equal(a, that.a)
+                && Structural.equal(b, that.b);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.SUBSCRIPT;
@@ -39,7 +62,7 @@ final class Subscript implements RenderableExpression {
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         AsciiArt a = this.a.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MAX)), b = this.b.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MIN));
-        if(b.height() == 1 && !Utils.isSubscript(a.toString())) {
+        if(b.height() == 1 && !Utils.isSubscript(a)) {
             String subscript = Utils.toSubscript(b.getLine(0));
             if(subscript != null && options.charset.canDisplay(subscript))
                 return a.appendBottom(new AsciiArt(subscript));
@@ -56,14 +79,28 @@ final class Subscript implements RenderableExpression {
 
     @Override
     public String renderLatex(RenderOptions options) {
-        return "{"+a.render(LATEX, options.setOutsidePrecedence(Precedence.MAX))+"}_{"+b.render(LATEX, options.setOutsidePrecedence(Precedence.MIN))+"}";
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        out.append("{");
+        a.render(LATEX, out, options.setOutsidePrecedence(Precedence.MAX));
+        out.append("}_{");
+        b.render(LATEX, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.append("}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node sub = new Node("msub");
-        sub.children.add(a.render(MATH_ML_NODE, options.setOutsidePrecedence(Precedence.MAX)));
-        sub.children.add(b.render(MATH_ML_NODE, options.setOutsidePrecedence(Precedence.MIN)));
-        return sub;
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("msub");
+        a.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Precedence.MAX));
+        b.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.endElement();
     }
 }
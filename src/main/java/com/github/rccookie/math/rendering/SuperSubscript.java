@@ -1,5 +1,8 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
@@ -11,11 +14,16 @@ final class SuperSubscript implements RenderableExpression {
     final RenderableExpression main;
     final RenderableExpression sup;
     final RenderableExpression sub;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     SuperSubscript(RenderableExpression main, RenderableExpression sup, RenderableExpression sub) {
         this.main = Arguments.checkNull(main, "main");
         this.sup = Arguments.checkNull(sup, "sup");
         this.sub = Arguments.checkNull(sub, "sub");
+        hash = Objects.hash(getClass(), this.main, this.sup, this.sub);
     }
 
     @Override
@@ -23,6 +31,22 @@ final class SuperSubscript implements RenderableExpression {
         return "supSub("+main+", "+sup+", "+sub+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        SuperSubscript that = (SuperSubscript) o;
+        return hash == that.hash
+                && Structural.equal(main, that.main)
+                && Structural.equal(sup, that.sup)
+                && Structural.equal(sub, that.sub);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Math.min(Precedence.SUPERSCRIPT, Precedence.SUBSCRIPT);
@@ -33,13 +57,18 @@ final class SuperSubscript implements RenderableExpression {
         return new Superscript(new Subscript(main, sub), sup).renderInline(options);
     }
 
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        new Superscript(new Subscript(main, sub), sup).renderInline(out, options);
+    }
+
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         AsciiArt main = this.main.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MAX)),
                   sup = this.sup.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MIN)),
                   sub = this.sub.render(ASCII_ART, options.setOutsidePrecedence(Precedence.MIN));
 
-        if(sub.height() == 1 && !Utils.isSubscript(sub.toString())) {
+        if(sub.height() == 1 && !Utils.isSubscript(sub)) {
             String subscript = Utils.toSubscript(sub.toString());
             if(subscript != null && options.charset.canDisplay(subscript))
                 return Superscript.renderArt(main.appendBottom(new AsciiArt(subscript)), sup, this.main instanceof Superscript || this.main instanceof SuperSubscript, main.size());
@@ -55,15 +84,31 @@ final class SuperSubscript implements RenderableExpression {
 
     @Override
     public String renderLatex(RenderOptions options) {
-        return "{"+main.render(LATEX, options.setOutsidePrecedence(Precedence.MAX))+"}^{"+sup.render(LATEX, options.setOutsidePrecedence(Precedence.MIN))+"}_{"+sub.render(LATEX, options.setOutsidePrecedence(Precedence.MIN))+"}";
+        return LATEX.render(this, options);
+    }
+
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        out.append("{");
+        main.render(LATEX, out, options.setOutsidePrecedence(Precedence.MAX));
+        out.append("}^{");
+        sup.render(LATEX, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.append("}_{");
+        sub.render(LATEX, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.append("}");
     }
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node subSup = new Node("msubSup");
-        subSup.children.add(main.render(MATH_ML_NODE, options.setOutsidePrecedence(Precedence.MAX)));
-        subSup.children.add(sub.render(MATH_ML_NODE, options.setOutsidePrecedence(Precedence.MIN)));
-        subSup.children.add(sup.render(MATH_ML_NODE, options.setOutsidePrecedence(Precedence.MIN)));
-        return subSup;
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("msubSup");
+        main.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Precedence.MAX));
+        sub.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Precedence.MIN));
+        sup.render(MATH_ML_NODE, out, options.setOutsidePrecedence(Precedence.MIN));
+        out.endElement();
     }
 }
@@ -1,13 +1,22 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
+import static com.github.rccookie.math.rendering.RenderMode.*;
+
 final class Text implements RenderableExpression {
 
     private final String text;
     private final int precedence;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Text(String text) {
         this(text, Precedence.MAX);
@@ -15,6 +24,7 @@ final class Text implements RenderableExpression {
     Text(String text, int precedence) {
         this.text = Arguments.checkNull(text, "text");
         this.precedence = precedence;
+        hash = Objects.hash(getClass(), this.text, this.precedence);
     }
 
     @Override
@@ -22,6 +32,21 @@ final class Text implements RenderableExpression {
         return "text("+text+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Text that = (Text) o;
+        return hash == that.hash
+                && text.equals(that.text)
+                && precedence == that.precedence;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return precedence;
@@ -44,8 +69,13 @@ final class Text implements RenderableExpression {
 
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        Node s = new Node("ms");
-        s.children.add(new com.github.rccookie.xml.Text(text));
-        return s;
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        out.startElement("ms");
+        out.text(text);
+        out.endElement();
     }
 }
@@ -0,0 +1,34 @@
+package com.github.rccookie.math.rendering;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * A render mode with plain text output, which can be written directly into an {@link Appendable}
+ * like a {@link StringBuilder} or a {@link java.io.Writer}, without creating the string
+ * representation of every subexpression first.
+ */
+@FunctionalInterface
+public interface TextRenderMode extends RenderMode<String> {
+
+    /**
+     * Renders the given expression and appends the output to the given appendable.
+     *
+     * @param e The expression to render
+     * @param out The appendable to write into
+     * @param options The options to use
+     * @throws IOException If an I/O error occurs while writing
+     */
+    void render(RenderableExpression e, Appendable out, RenderableExpression.RenderOptions options) throws IOException;
+
+    @Override
+    default String render(RenderableExpression e, RenderableExpression.RenderOptions options) {
+        StringBuilder str = new StringBuilder();
+        try {
+            render(e, str, options);
+        } catch(IOException ex) {
+            throw new UncheckedIOException(ex); // Not thrown by StringBuilder
+        }
+        return str.toString();
+    }
+}
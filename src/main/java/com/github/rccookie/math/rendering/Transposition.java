@@ -1,15 +1,25 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
+import java.util.Objects;
+
 import com.github.rccookie.math.Precedence;
 import com.github.rccookie.util.Arguments;
 import com.github.rccookie.xml.Node;
 
+import static com.github.rccookie.math.rendering.RenderMode.*;
+
 final class Transposition implements RenderableExpression {
 
     private final RenderableExpression inner;
+    /**
+     * Structural hash code, computed once on construction.
+     */
+    private final int hash;
 
     Transposition(RenderableExpression inner) {
         this.inner = Arguments.checkNull(inner, "inner");
+        hash = Objects.hash(getClass(), this.inner);
     }
 
     @Override
@@ -17,6 +27,20 @@ final class Transposition implements RenderableExpression {
         return "transp("+inner+")";
     }
 
+    @Override
+    public boolean equals(Object o) {
+        if(this == o) return true;
+        if(o == null || getClass() != o.getClass()) return false;
+        Transposition that = (Transposition) o;
+        return hash == that.hash
+                && Structural.equal(inner, that.inner);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
     @Override
     public int precedence() {
         return Precedence.TRANSPOSITION;
@@ -27,6 +51,11 @@ final class Transposition implements RenderableExpression {
         return getStyle(options).renderInline(options);
     }
 
+    @Override
+    public void renderInline(Appendable out, RenderOptions options) throws IOException {
+        getStyle(options).renderInline(out, options);
+    }
+
     @Override
     public AsciiArt renderAsciiArt(RenderOptions options) {
         return getStyle(options).renderAsciiArt(options);
@@ -37,15 +66,39 @@ final class Transposition implements RenderableExpression {
         return getStyle(options).renderLatex(options);
     }
 
+    @Override
+    public void renderLatex(Appendable out, RenderOptions options) throws IOException {
+        getStyle(options).renderLatex(out, options);
+    }
+
     @Override
     public Node renderMathMLNode(RenderOptions options) {
-        return getStyle(options).renderMathMLNode(options);
+        return MATH_ML_NODE.render(this, options);
+    }
+
+    @Override
+    public void renderMathMLNode(MathMLWriter out, RenderOptions options) throws IOException {
+        getStyle(options).renderMathMLNode(out, options);
     }
 
     @Override
     public <T> T render(RenderMode<T> mode, RenderOptions options) {
-        return getStyle(options).render(mode, options);
+        T result = Renderer.lookup(this, mode, options);
+        return result != null ? result : Renderer.store(this, mode, options, getStyle(options).render(mode, options));
     }
+    @Override
+    public void render(RenderMode<String> mode, Appendable out, RenderOptions options) throws IOException {
+        if(options.cache != null)
+            out.append(render(mode, options));
+        else getStyle(options).render(mode, out, options);
+    }
+    @Override
+    public void render(RenderMode<Node> mode, MathMLWriter out, RenderOptions options) throws IOException {
+        if(options.cache != null)
+            Renderer.renderCompletely(this, mode, out, options);
+        else getStyle(options).render(mode, out, options);
+    }
+
 
     private RenderableExpression getStyle(RenderOptions options) {
         switch(options.transpositionStyle) {
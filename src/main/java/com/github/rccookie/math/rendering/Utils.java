@@ -1,13 +1,11 @@
 package com.github.rccookie.math.rendering;
 
+import java.io.IOException;
 import java.math.BigInteger;
-import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
-import com.github.rccookie.xml.Node;
-
 import org.jetbrains.annotations.Nullable;
 
 final class Utils {
@@ -99,6 +97,14 @@ final class Utils {
         return !s.isEmpty() && SUPERSCRIPT.containsValue(s.charAt(s.length()-1));
     }
 
+    /**
+     * Returns whether the last character of the given ascii art is a superscript character,
+     * without painting the ascii art if possible.
+     */
+    static boolean isSuperscript(AsciiArt a) {
+        return a.width() != 0 && a.height() != 0 && SUPERSCRIPT.containsValue(a.charAt(a.width()-1, a.height()-1));
+    }
+
     public static String toSuperscript(String s) {
         char[] chars = s.toCharArray();
         for(int i=0; i<chars.length; i++) {
@@ -113,6 +119,14 @@ final class Utils {
         return !s.isEmpty() && SUBSCRIPT.containsValue(s.charAt(s.length()-1));
     }
 
+    /**
+     * Returns whether the last character of the given ascii art is a subscript character,
+     * without painting the ascii art if possible.
+     */
+    static boolean isSubscript(AsciiArt a) {
+        return a.width() != 0 && a.height() != 0 && SUBSCRIPT.containsValue(a.charAt(a.width()-1, a.height()-1));
+    }
+
     public static String toSubscript(String s) {
         char[] chars = s.toCharArray();
         for(int i=0; i<chars.length; i++) {
@@ -124,24 +138,29 @@ final class Utils {
     }
 
 
-    public static Node emptyNode() {
-        return new Node("ms");
+    public static void orEmpty(@Nullable RenderableExpression e, MathMLWriter out, RenderableExpression.RenderOptions options) throws IOException {
+        if(e != null)
+            e.render(RenderMode.MATH_ML_NODE, out, options);
+        else {
+            out.startElement("ms");
+            out.endElement();
+        }
     }
 
-    public static Node orEmpty(@Nullable RenderableExpression e, RenderableExpression.RenderOptions options) {
-        return e != null ? e.render(RenderMode.MATH_ML_NODE, options) : emptyNode();
-    }
 
-    public static Node join(Node... nodes) {
-        if(nodes.length == 0) return emptyNode();
-        if(nodes.length == 1) return nodes[0];
-        Node row = new Node("mrow");
-        row.children.addAll(Arrays.asList(nodes));
-        return row;
+    private static final BigInteger FIVE = BigInteger.valueOf(5);
+    /**
+     * 5<sup>2<sup>i</sup></sup> at index i, filled lazily.
+     */
+    private static final BigInteger[] POWERS_OF_FIVE = new BigInteger[31];
+
+    private static BigInteger powerOfFive(int log2Exponent) {
+        BigInteger power = POWERS_OF_FIVE[log2Exponent];
+        if(power == null) // Racy, but BigInteger is immutable
+            POWERS_OF_FIVE[log2Exponent] = power = log2Exponent == 0 ? FIVE : powerOfFive(log2Exponent - 1).pow(2);
+        return power;
     }
 
-
-    private static final BigInteger FIVE = BigInteger.valueOf(5);
     @Nullable
     public static BigInteger getFactorToPowerOfTen(BigInteger x) {
         if(x.compareTo(BigInteger.ONE) == 0)
@@ -150,21 +169,13 @@ final class Utils {
         if(x.compareTo(BigInteger.ZERO) <= 0)
             throw new ArithmeticException("Positive number expected");
 
-        BigInteger[] res;
-        int twoCount = 0, fiveCount = 0;
-
         // Factor exists <=> prime factorization only consists of 2s and 5s
-        while(!x.testBit(0)) { // <=> x % 2 == 0
-            x = x.shiftRight(1); // <=> x /= 2
-            twoCount++;
-        }
-        while((res = x.divideAndRemainder(FIVE))[1].compareTo(BigInteger.ZERO) == 0) { // <=> x % 5 == 0
-            x = res[0]; // <=> x /= 5
-            fiveCount++;
-        }
+        int twoCount = x.getLowestSetBit();
+        x = x.shiftRight(twoCount);
+        int fiveCount = fiveCount(x, Integer.MAX_VALUE);
 
         // Other prime factors exist
-        if(x.compareTo(BigInteger.ONE) != 0) return null;
+        if(!x.equals(FIVE.pow(fiveCount))) return null;
 
         // Every 2*5 can be ignored, because it becomes a multiple of 10
         if(twoCount == fiveCount) return BigInteger.ONE;
@@ -173,9 +184,34 @@ final class Utils {
         return BigInteger.ONE.shiftLeft(fiveCount - twoCount);  // <=> 2^fiveCount
     }
 
+    /**
+     * Returns the number of times x &gt; 0 is divisible by 5, but at most max.
+     */
+    static int fiveCount(BigInteger x, int max) {
+        int fiveCount = 0;
+
+        // Divide by 5^1, 5^2, 5^4, ... as long as possible, then by the smaller powers again
+        // to find the remaining factors of 5 by binary search
+        BigInteger[] res;
+        int i = 0;
+        for(; fiveCount + (1L << i) <= max && powerOfFive(i).bitLength() <= x.bitLength(); i++) {
+            if((res = x.divideAndRemainder(powerOfFive(i)))[1].signum() != 0) break;
+            x = res[0];
+            fiveCount += 1 << i;
+        }
+        while(--i >= 0) {
+            if(fiveCount + (1L << i) > max || (res = x.divideAndRemainder(powerOfFive(i)))[1].signum() != 0) continue;
+            x = res[0];
+            fiveCount += 1 << i;
+        }
+        return fiveCount;
+    }
+
     public static int log(BigInteger base, BigInteger x) {
         if(base.compareTo(BigInteger.ZERO) <= 0 || x.compareTo(BigInteger.ZERO) <= 0)
             throw new ArithmeticException("Positive numbers expected");
+        if(base.equals(BigInteger.TEN))
+            return log10(x);
 
         int log = 0;
         while(x.compareTo(base) >= 0) {
@@ -185,6 +221,54 @@ final class Utils {
         return log;
     }
 
+    private static final double LOG10_2 = Math.log10(2);
+
+    /**
+     * Powers of ten with exponents below this are cached.
+     */
+    private static final BigInteger[] POWERS_OF_TEN = new BigInteger[1024];
+
+    /**
+     * Returns 10<sup>exponent</sup>.
+     */
+    static BigInteger pow10(int exponent) {
+        if(exponent >= POWERS_OF_TEN.length)
+            return BigInteger.TEN.pow(exponent);
+        BigInteger power = POWERS_OF_TEN[exponent];
+        if(power == null) // Racy, but BigInteger is immutable
+            POWERS_OF_TEN[exponent] = power = BigInteger.TEN.pow(exponent);
+        return power;
+    }
+
+    /**
+     * Returns the floor of the base 10 logarithm of x &gt; 0. The result is estimated from
+     * the bit length and then corrected, which usually needs a single comparison.
+     */
+    static int log10(BigInteger x) {
+        if(x.signum() <= 0)
+            throw new ArithmeticException("Positive number expected");
+        // Slightly underestimated so rounding errors never overestimate it
+        int log = (int) ((x.bitLength() - 1) * LOG10_2 - 1e-6);
+        while(x.compareTo(pow10(log + 1)) >= 0)
+            log++;
+        return log;
+    }
+
+    /**
+     * Returns the number of decimal digits of x, without sign.
+     */
+    static int digitCount(BigInteger x) {
+        return x.signum() == 0 ? 1 : log10(x.abs()) + 1;
+    }
+
+    /**
+     * Returns the smallest m &ge; 0 such that n * 10<sup>m</sup> &ge; d, for n, d &gt; 0.
+     */
+    static int decimalShift(BigInteger n, BigInteger d) {
+        int shift = Math.max(0, log10(d) - log10(n));
+        return n.multiply(pow10(shift)).compareTo(d) >= 0 ? shift : shift + 1;
+    }
+
     static boolean hasPadding(String s) {
         if(s.contains("\n"))
             return s.lines().allMatch(Utils::hasPadding);